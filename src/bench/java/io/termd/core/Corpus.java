@@ -0,0 +1,181 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core;
+
+import io.termd.core.util.Helper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Input corpora for the benchmarks, generated with a fixed seed so runs are comparable.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public final class Corpus {
+
+  /**
+   * The approximate number of code points of a text corpus.
+   */
+  public static final int SIZE = 64 * 1024;
+
+  private static final String[] LEVELS = { "INFO ", "DEBUG", "WARN ", "ERROR", "TRACE" };
+  private static final String[] LOGGERS = { "io.termd.core.telnet", "io.termd.core.ssh", "org.apache.sshd.server", "io.netty.channel" };
+  private static final String[] MESSAGES = {
+      "Connection %d accepted from 10.0.%d.%d:51234",
+      "Session %d authenticated in %d ms, %d bytes pending",
+      "Channel %d closed after %d seconds (%d bytes written)",
+      "Window adjust %d for channel %d, remote size %d"
+  };
+
+  /**
+   * @param name the corpus name: {@code ascii}, {@code cjk} or {@code tui}
+   * @return the corpus text
+   */
+  public static String text(String name) {
+    switch (name) {
+      case "ascii":
+        return asciiLog();
+      case "cjk":
+        return cjk();
+      case "tui":
+        return tui();
+      default:
+        throw new IllegalArgumentException("Unknown corpus " + name);
+    }
+  }
+
+  /**
+   * @return log output lines
+   */
+  public static String asciiLog() {
+    Random random = new Random(0);
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < SIZE) {
+      sb.append(String.format("2016-05-12 10:%02d:%02d,%03d %s [%s] ", random.nextInt(60), random.nextInt(60), random.nextInt(1000),
+          LEVELS[random.nextInt(LEVELS.length)], LOGGERS[random.nextInt(LOGGERS.length)]));
+      sb.append(String.format(MESSAGES[random.nextInt(MESSAGES.length)], random.nextInt(1000), random.nextInt(256), random.nextInt(256)));
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return Chinese, Japanese and Korean text lines with some ASCII punctuation
+   */
+  public static String cjk() {
+    Random random = new Random(0);
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < SIZE) {
+      int len = 10 + random.nextInt(30);
+      for (int i = 0;i < len;i++) {
+        int r = random.nextInt(10);
+        if (r < 6) {
+          sb.appendCodePoint(0x4E00 + random.nextInt(0x5000)); // Han
+        } else if (r < 8) {
+          sb.appendCodePoint(0x3041 + random.nextInt(0x56)); // Hiragana
+        } else if (r < 9) {
+          sb.appendCodePoint(0xAC00 + random.nextInt(0x2BA4)); // Hangul
+        } else {
+          sb.append(", ");
+        }
+      }
+      sb.append("。\n");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return full screen text UI output: cursor addressing, colors, line drawing and erasing
+   */
+  public static String tui() {
+    Random random = new Random(0);
+    StringBuilder sb = new StringBuilder();
+    while (sb.length() < SIZE) {
+      sb.append("\033[H\033[2J\033[1;1H\033[7m top - 10:15:32 up 12 days,  3 users,  load average: 0.42, 0.37, 0.31\033[K\033[0m");
+      for (int row = 2;row < 24;row++) {
+        sb.append("\033[").append(row).append(";1H");
+        sb.append("\033[38;5;").append(random.nextInt(256)).append('m');
+        sb.append('│').append(String.format("%5d", random.nextInt(32768))).append(" \033[1mjava\033[22m ");
+        sb.append("\033[32m").append(String.format("%4.1f", random.nextDouble() * 100)).append("\033[39m ");
+        for (int i = random.nextInt(20);i > 0;i--) {
+          sb.append('█');
+        }
+        sb.append("\033[K\033[0m");
+      }
+      sb.append("\033[24;1H└───┘\033[?25h");
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return interactive keystrokes: typing with editing keys, arrows, completion and accepted lines
+   */
+  public static int[] keystrokes() {
+    Random random = new Random(0);
+    IntStream.Builder builder = IntStream.builder();
+    for (int i = 0;i < SIZE / 8;i++) {
+      int r = random.nextInt(100);
+      if (r < 80) {
+        builder.add('a' + random.nextInt(26));
+      } else if (r < 85) {
+        builder.add(' ');
+      } else if (r < 88) {
+        builder.add(0x7F); // Backspace
+      } else if (r < 92) {
+        // Left / right / up / down arrows
+        builder.add(27).add('[').add('A' + random.nextInt(4));
+      } else if (r < 94) {
+        builder.add(1 + 4 * random.nextInt(2)); // Ctrl-A / Ctrl-E
+      } else if (r < 96) {
+        builder.add('\t');
+      } else if (r < 98) {
+        builder.add(27).add('b'); // Meta-b
+      } else {
+        builder.add('\r');
+      }
+    }
+    return builder.build().toArray();
+  }
+
+  /**
+   * @param s the string
+   * @return the code points of the string
+   */
+  public static int[] codePoints(String s) {
+    return Helper.toCodePoints(s);
+  }
+
+  /**
+   * @param codePoints the code points
+   * @param size the chunk size
+   * @return the code points split in chunks, like they are received from a transport
+   */
+  public static List<int[]> chunks(int[] codePoints, int size) {
+    List<int[]> chunks = new ArrayList<>();
+    for (int i = 0;i < codePoints.length;i += size) {
+      chunks.add(Arrays.copyOfRange(codePoints, i, Math.min(i + size, codePoints.length)));
+    }
+    return chunks;
+  }
+
+  private Corpus() {
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handling of a key stroke message with the json and the binary protocols.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpTtyConnectionBenchmark {
+
+  private HttpTtyConnection conn;
+  private String json;
+  private ByteBuf jsonBuf;
+  private ByteBuffer binary;
+
+  @Setup
+  public void setup(Blackhole blackhole) {
+    conn = new HttpTtyConnection() {
+      @Override
+      protected void write(byte[] buffer) {
+      }
+      @Override
+      public void execute(Runnable task) {
+        task.run();
+      }
+      @Override
+      public void schedule(Runnable task, long delay, TimeUnit unit) {
+      }
+      @Override
+      public void close() {
+      }
+    };
+    conn.setStdinHandler(blackhole::consume);
+    json = "{\"action\":\"read\",\"data\":\"a\"}";
+    jsonBuf = Unpooled.directBuffer().writeBytes(json.getBytes(StandardCharsets.UTF_8));
+    binary = ByteBuffer.wrap(new byte[]{HttpTtyConnection.OP_DATA, 'a'});
+  }
+
+  @Benchmark
+  public void json() {
+    conn.writeToDecoder(json);
+  }
+
+  @Benchmark
+  public void jsonBuffer() {
+    conn.writeJsonMessage(jsonBuf);
+  }
+
+  @Benchmark
+  public void binary() {
+    binary.position(0);
+    conn.writeBinaryMessage(binary);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.io;
+
+import io.termd.core.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link BinaryDecoder} and {@link BinaryEncoder} throughput, the corpus is processed in chunks the size
+ * of a network read.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+  private static final int CHUNK_SIZE = 1024;
+
+  @Param({"ascii", "cjk", "tui"})
+  public String corpus;
+
+  private byte[] bytes;
+  private int[] codePoints;
+  private BinaryDecoder decoder;
+  private BinaryEncoder encoder;
+  private ByteBuffer encoded;
+  private long count;
+
+  @Setup
+  public void setup() {
+    String text = Corpus.text(corpus);
+    bytes = text.getBytes(StandardCharsets.UTF_8);
+    codePoints = Corpus.codePoints(text);
+    decoder = new BinaryDecoder(512, StandardCharsets.UTF_8, (CodePointSink) (buf, off, len) -> count += len);
+    encoder = new BinaryEncoder(StandardCharsets.UTF_8, data -> count += data.length);
+    encoded = ByteBuffer.allocate(CHUNK_SIZE * 4);
+  }
+
+  @Benchmark
+  public long decode() {
+    for (int i = 0;i < bytes.length;i += CHUNK_SIZE) {
+      decoder.write(bytes, i, Math.min(CHUNK_SIZE, bytes.length - i));
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long encode() {
+    for (int i = 0;i < codePoints.length;i += CHUNK_SIZE) {
+      encoder.accept(codePoints, i, Math.min(CHUNK_SIZE, codePoints.length - i));
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long encodeToBuffer() {
+    for (int i = 0;i < codePoints.length;i += CHUNK_SIZE) {
+      encoded.clear();
+      encoder.encode(codePoints, i, Math.min(CHUNK_SIZE, codePoints.length - i), encoded);
+      count += encoded.position();
+    }
+    return count;
+  }
+}
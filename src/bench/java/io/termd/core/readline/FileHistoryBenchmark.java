@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link FileHistory} opening and paging of a large history file.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileHistoryBenchmark {
+
+  @Param({"1000000"})
+  public int size;
+
+  private Path file;
+
+  @Setup
+  public void setup() throws Exception {
+    file = Files.createTempFile("history", null);
+    try (FileHistory history = new FileHistory(file)) {
+      for (int i = 0;i < size;i++) {
+        history.add(0, Helper.toCodePoints("git commit -m \"change " + i + "\""));
+      }
+    }
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public int[] open() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      return history.get(0);
+    }
+  }
+
+  @Benchmark
+  public int page() throws Exception {
+    int length = 0;
+    try (FileHistory history = new FileHistory(file)) {
+      for (int i = 0;i < 100;i++) {
+        length += history.get(i).length;
+      }
+    }
+    return length;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.readline;
+
+import io.termd.core.util.Helper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link History} search over a full history.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistoryBenchmark {
+
+  private static final String[] WORDS = {"ls", "cd", "git", "mvn", "grep", "cat", "echo", "-la", "status", "clean",
+      "install", "/tmp", "src", "main", "java", "|", "wc", "-l", "commit", "push"};
+
+  @Param({"100000"})
+  public int size;
+
+  private History history;
+  private int[] text;
+  private int[] prefix;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    history = new History(size, false);
+    for (int i = 0;i < size;i++) {
+      StringBuilder line = new StringBuilder();
+      for (int j = random.nextInt(6);j >= 0;j--) {
+        line.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+      }
+      history.add(0, Helper.toCodePoints(line.toString()));
+    }
+    text = Helper.toCodePoints("docker");
+    prefix = Helper.toCodePoints("kubectl");
+  }
+
+  @Benchmark
+  public int search() {
+    return history.search(text, 0);
+  }
+
+  @Benchmark
+  public int searchPrefix() {
+    return history.searchPrefix(prefix, 0);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.readline;
+
+import io.termd.core.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EventQueue} matching with the default <i>inputrc</i> keymap and {@link LineBuffer} screen updates.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadlineBenchmark {
+
+  private static final int WIDTH = 80;
+
+  private Keymap keymap;
+  private int[] keystrokes;
+  private int[] paste;
+  private LineBuffer line;
+  private LineBuffer edited;
+  private LineBuffer wrapped;
+  private long count;
+
+  @Setup
+  public void setup() {
+    keymap = Keymap.getDefault();
+    keystrokes = Corpus.keystrokes();
+    paste = Arrays.copyOf(Corpus.codePoints(Corpus.asciiLog()), 16 * 1024);
+    line = new LineBuffer().insert("ls -al /var/log/termd | grep --color=auto -i 'connection accepted'");
+    line.setCursor(20);
+    edited = line.copy();
+    edited.insert('x');
+    wrapped = new LineBuffer();
+    for (int i = 0;i < 3 * WIDTH;i++) {
+      wrapped.insert('a' + i % 26);
+    }
+  }
+
+  @Benchmark
+  public long matchKeystrokes() {
+    EventQueue queue = new EventQueue(keymap);
+    for (int i = 0;i < keystrokes.length;i += 16) {
+      queue.append(Arrays.copyOfRange(keystrokes, i, Math.min(i + 16, keystrokes.length)));
+      while (queue.hasNext()) {
+        count += queue.next().length();
+      }
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long matchPaste() {
+    EventQueue queue = new EventQueue(keymap);
+    queue.append(paste);
+    while (queue.hasNext()) {
+      count += queue.next().length();
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long updateInsert() {
+    line.update(edited, codePoints -> count += codePoints.length, WIDTH);
+    return count;
+  }
+
+  @Benchmark
+  public long updateWrapped() {
+    new LineBuffer().update(wrapped, codePoints -> count += codePoints.length, WIDTH);
+    return count;
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.telnet;
+
+import io.termd.core.Corpus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link TelnetConnection} receive and write throughput. The {@code binary} corpus is random bytes, so it
+ * contains IAC bytes to escape and to unescape.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TelnetConnectionBenchmark {
+
+  private static final int CHUNK_SIZE = 1024;
+
+  @Param({"ascii", "cjk", "tui", "binary"})
+  public String corpus;
+
+  private byte[] data;
+  private byte[] received;
+  private TelnetConnection conn;
+  private long count;
+
+  @Setup
+  public void setup() {
+    if (corpus.equals("binary")) {
+      data = new byte[Corpus.SIZE];
+      new Random(0).nextBytes(data);
+    } else {
+      data = Corpus.text(corpus).getBytes(StandardCharsets.UTF_8);
+    }
+    conn = new TelnetConnection(new TelnetHandler() {
+      @Override
+      protected void onData(ByteBuffer data) {
+        count += data.remaining();
+        data.position(data.limit());
+      }
+    }) {
+      @Override
+      protected void execute(Runnable task) {
+        task.run();
+      }
+      @Override
+      protected void schedule(Runnable task, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+      }
+      @Override
+      protected void send(byte[] data) {
+        count += data.length;
+      }
+      @Override
+      protected void send(byte[] data, int offset, int length) {
+        count += length;
+      }
+      @Override
+      public void close() {
+      }
+    };
+    conn.receiveBinary = true;
+    conn.sendBinary = true;
+    // What the client sends for the data
+    ByteBuffer escaped = ByteBuffer.allocate(data.length * 2);
+    TelnetConnection.escape(data, 0, data.length, escaped);
+    received = new byte[escaped.position()];
+    escaped.flip();
+    escaped.get(received);
+  }
+
+  @Benchmark
+  public long receive() {
+    for (int i = 0;i < received.length;i += CHUNK_SIZE) {
+      conn.receive(ByteBuffer.wrap(received, i, Math.min(CHUNK_SIZE, received.length - i)));
+    }
+    return count;
+  }
+
+  @Benchmark
+  public long write() {
+    for (int i = 0;i < data.length;i += CHUNK_SIZE) {
+      conn.write(data, i, Math.min(CHUNK_SIZE, data.length - i));
+    }
+    return count;
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.term;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Sequence#eval} throughput for the parameterized capabilities used when rendering.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceBenchmark {
+
+  private Sequence cursorAddress;
+  private Sequence parmRightCursor;
+  private Sequence setForeground;
+  private long count;
+
+  @Setup
+  public void setup() {
+    Device device = TermInfo.defaultInfo().getDevice("xterm");
+    cursorAddress = device.getFeature(Capability.cursor_address);
+    parmRightCursor = device.getFeature(Capability.parm_right_cursor);
+    setForeground = device.getFeature(Capability.set_a_foreground);
+  }
+
+  @Benchmark
+  public String cursorAddress() {
+    return cursorAddress.eval("12", "40");
+  }
+
+  @Benchmark
+  public String parmRightCursor() {
+    return parmRightCursor.eval("7");
+  }
+
+  @Benchmark
+  public long setForeground() {
+    setForeground.eval(new String[]{"3"}, codePoints -> count += codePoints.length);
+    return count;
+  }
+}
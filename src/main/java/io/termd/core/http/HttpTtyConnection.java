@@ -16,19 +16,26 @@
 
 package io.termd.core.http;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.termd.core.io.BinaryDecoder;
 import io.termd.core.io.BinaryEncoder;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
 import io.termd.core.tty.TtyOutputMode;
+import io.termd.core.tty.TtyOutputQueue;
 import io.termd.core.util.Vector;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -51,6 +58,20 @@ import java.util.function.Consumer;
  *   "rows: 50
  * }
  *
+ * A client can negotiate instead the {@link #BINARY_PROTOCOL} subprotocol carried in binary messages starting
+ * with an opcode:
+ *
+ * <ul>
+ *   <li>{@link #OP_DATA}: the UTF-8 bytes the user typed, or the output bytes sent to the client</li>
+ *   <li>{@link #OP_RESIZE}: the cols and rows as 32-bit big-endian integers</li>
+ *   <li>{@link #OP_PING}: an arbitrary payload the server sends back in an {@link #OP_PONG} message</li>
+ *   <li>{@link #OP_SESSION}: sent by a server keeping resumable sessions, the 64-bit big-endian offset in the
+ *   session output of the next data byte followed by the UTF-8 session token</li>
+ * </ul>
+ *
+ * A client resumes a session by offering along with {@link #BINARY_PROTOCOL} a subprotocol made of the
+ * {@link #RESUME_PROTOCOL} prefix, the decimal offset of the output it received, a dot and the session token.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  * @author <a href="mailto:matejonnet@gmail.com">Matej Lazar</a>
  */
@@ -58,15 +79,40 @@ public abstract class HttpTtyConnection implements TtyConnection {
 
   public static final Vector DEFAULT_SIZE = new Vector(80, 24);
 
+  /**
+   * The subprotocol of the binary protocol.
+   */
+  public static final String BINARY_PROTOCOL = "termd.binary";
+
+  /**
+   * The prefix of the subprotocol carrying the offset and the token of a resumed session.
+   */
+  public static final String RESUME_PROTOCOL = "termd.resume.";
+
+  public static final byte OP_DATA = 0;
+  public static final byte OP_RESIZE = 1;
+  public static final byte OP_PING = 2;
+  public static final byte OP_PONG = 3;
+  public static final byte OP_SESSION = 4;
+
+  private static final JsonFactory JSON = new JsonFactory();
+  private static final int ACTION_UNKNOWN = 0;
+  private static final int ACTION_READ = 1;
+  private static final int ACTION_RESIZE = 2;
+
   private Charset charset;
   private Vector size;
   private Consumer<Vector> sizeHandler;
   private final TtyEventDecoder eventDecoder;
   private final BinaryDecoder decoder;
-  private final Consumer<int[]> stdout;
+  private final BinaryEncoder encoder;
+  private final TtyOutputQueue stdout;
   private Consumer<Void> closeHandler;
+  private Consumer<Boolean> writabilityHandler;
   private Consumer<String> termHandler;
   private long lastAccessedTime = System.currentTimeMillis();
+  private int[] data = new int[64]; // The code points of the data field of a json message
+  private volatile long malformedMessages;
 
   public HttpTtyConnection() {
     this(StandardCharsets.UTF_8, DEFAULT_SIZE);
@@ -77,7 +123,8 @@ public abstract class HttpTtyConnection implements TtyConnection {
     this.size = size;
     this.eventDecoder = new TtyEventDecoder(3, 26, 4);
     this.decoder = new BinaryDecoder(512, charset, eventDecoder);
-    this.stdout = new TtyOutputMode(new BinaryEncoder(charset, this::write));
+    this.encoder = new BinaryEncoder(charset, this::write);
+    this.stdout = new TtyOutputQueue(this::execute, this::inExecutor, new TtyOutputMode(this::writeCodePoints));
   }
 
   @Override
@@ -102,6 +149,40 @@ public abstract class HttpTtyConnection implements TtyConnection {
 
   protected abstract void write(byte[] buffer);
 
+  /**
+   * Write code points to the client. The default implementation encodes them to a byte array passed to
+   * {@link #write(byte[])}, it can be overriden to encode them with the {@link #encoder()} into a transport buffer.
+   *
+   * @param codePoints the code points
+   */
+  protected void writeCodePoints(int[] codePoints) {
+    encoder.accept(codePoints);
+  }
+
+  /**
+   * Execute a task on the connection executor once the output written before has been handed to
+   * {@link #writeCodePoints(int[])}, a subclass should close the connection with it.
+   *
+   * @param task the task to execute
+   */
+  protected void executeAfterOutput(Runnable task) {
+    stdout.execute(task);
+  }
+
+  /**
+   * @return true when the current thread is the connection executor, the default implementation returns false
+   */
+  protected boolean inExecutor() {
+    return false;
+  }
+
+  /**
+   * @return the encoder of this connection
+   */
+  protected BinaryEncoder encoder() {
+    return encoder;
+  }
+
   /**
    * Special case to handle tty events.
    *
@@ -112,42 +193,182 @@ public abstract class HttpTtyConnection implements TtyConnection {
     decoder.write(bytes);
   }
 
+  /**
+   * Handle a message of the binary protocol.
+   *
+   * @param msg the message
+   */
+  public void writeBinaryMessage(ByteBuffer msg) {
+    if (!msg.hasRemaining()) {
+      return;
+    }
+    switch (msg.get()) {
+      case OP_DATA:
+        lastAccessedTime = System.currentTimeMillis();
+        decoder.write(msg);
+        break;
+      case OP_RESIZE:
+        if (msg.remaining() >= 8) {
+          resize(msg.getInt(), msg.getInt());
+        }
+        break;
+      case OP_PING:
+        lastAccessedTime = System.currentTimeMillis();
+        writePong(msg);
+        break;
+    }
+  }
+
+  /**
+   * Send back the payload of a ping message of the binary protocol, the default implementation does nothing.
+   *
+   * @param payload the ping payload
+   */
+  protected void writePong(ByteBuffer payload) {
+  }
+
+  /**
+   * Handle a message of the json protocol.
+   *
+   * @param msg the message
+   */
   public void writeToDecoder(String msg) {
-    ObjectMapper mapper = new ObjectMapper();
-    Map<String, Object> obj;
-    String action;
-    try {
-      obj = mapper.readValue(msg, Map.class);
-      action = (String) obj.get("action");
+    try (JsonParser parser = JSON.createParser(msg)) {
+      handleJsonMessage(parser);
     } catch (IOException e) {
-      // Log this
-      return;
+      malformedMessages++;
+    }
+  }
+
+  /**
+   * Handle a message of the json protocol encoded in UTF-8.
+   *
+   * @param msg the message
+   */
+  public void writeJsonMessage(ByteBuf msg) {
+    try (JsonParser parser = msg.hasArray() ?
+        JSON.createParser(msg.array(), msg.arrayOffset() + msg.readerIndex(), msg.readableBytes()) :
+        JSON.createParser((InputStream) new ByteBufInputStream(msg.duplicate()))) {
+      handleJsonMessage(parser);
+    } catch (IOException e) {
+      malformedMessages++;
     }
-    if (action != null) {
-      switch (action) {
-        case "read":
-          lastAccessedTime = System.currentTimeMillis();
-          String data = (String) obj.get("data");
-          decoder.write(data.getBytes()); //write back echo
+  }
+
+  /**
+   * @return the number of malformed json messages received
+   */
+  public long getMalformedMessages() {
+    return malformedMessages;
+  }
+
+  /**
+   * Pull the fields of a message, the {@code data} characters are decoded in the {@link #data} buffer until
+   * the action is known.
+   */
+  private void handleJsonMessage(JsonParser parser) throws IOException {
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new JsonParseException(parser, "Expected an object");
+    }
+    int action = -1;
+    int dataLength = -1;
+    int cols = size.x();
+    int rows = size.y();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      JsonToken token = parser.nextToken();
+      switch (name) {
+        case "action":
+          if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Invalid action");
+          }
+          action = action(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
           break;
-        case "resize":
-          try {
-            int cols = (int) obj.getOrDefault("cols", size.x());
-            int rows = (int) obj.getOrDefault("rows", size.y());
-            if (cols > 0 && rows > 0) {
-              Vector newSize = new Vector(cols, rows);
-              if (!newSize.equals(size())) {
-                size = newSize;
-                if (sizeHandler != null) {
-                  sizeHandler.accept(size);
-                }
-              }
-            }
-          } catch (Exception e) {
-            // Invalid size
-            // Log this
+        case "data":
+          if (token != JsonToken.VALUE_STRING) {
+            throw new JsonParseException(parser, "Invalid data");
           }
+          dataLength = decodeData(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+          break;
+        case "cols":
+          cols = parser.getIntValue();
+          break;
+        case "rows":
+          rows = parser.getIntValue();
           break;
+        default:
+          parser.skipChildren();
+          break;
+      }
+    }
+    if (parser.getCurrentToken() != JsonToken.END_OBJECT) {
+      throw new JsonParseException(parser, "Unterminated object");
+    }
+    switch (action) {
+      case ACTION_READ:
+        if (dataLength == -1) {
+          throw new JsonParseException(parser, "Missing data");
+        }
+        lastAccessedTime = System.currentTimeMillis();
+        eventDecoder.accept(data, 0, dataLength);
+        break;
+      case ACTION_RESIZE:
+        resize(cols, rows);
+        break;
+      case -1:
+        throw new JsonParseException(parser, "Missing action");
+    }
+  }
+
+  private static int action(char[] chars, int offset, int length) {
+    if (regionMatches(chars, offset, length, "read")) {
+      return ACTION_READ;
+    } else if (regionMatches(chars, offset, length, "resize")) {
+      return ACTION_RESIZE;
+    } else {
+      return ACTION_UNKNOWN;
+    }
+  }
+
+  private static boolean regionMatches(char[] chars, int offset, int length, String s) {
+    if (length != s.length()) {
+      return false;
+    }
+    for (int i = 0;i < length;i++) {
+      if (chars[offset + i] != s.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Decode the code points of the chars in the {@link #data} buffer.
+   *
+   * @return the number of code points
+   */
+  private int decodeData(char[] chars, int offset, int length) {
+    if (data.length < length) {
+      data = new int[Math.max(length, data.length * 2)];
+    }
+    int end = offset + length;
+    int count = 0;
+    while (offset < end) {
+      int codePoint = Character.codePointAt(chars, offset, end);
+      data[count++] = codePoint;
+      offset += Character.charCount(codePoint);
+    }
+    return count;
+  }
+
+  private void resize(int cols, int rows) {
+    if (cols > 0 && rows > 0) {
+      Vector newSize = new Vector(cols, rows);
+      if (!newSize.equals(size())) {
+        size = newSize;
+        if (sizeHandler != null) {
+          sizeHandler.accept(size);
+        }
       }
     }
   }
@@ -195,6 +416,37 @@ public abstract class HttpTtyConnection implements TtyConnection {
     return stdout;
   }
 
+  /**
+   * The default implementation returns true, a subclass should override it to reflect the transport writability
+   * and call {@link #onWritabilityChanged(boolean)} when it changes.
+   */
+  @Override
+  public boolean isWritable() {
+    return true;
+  }
+
+  @Override
+  public Consumer<Boolean> getWritabilityHandler() {
+    return writabilityHandler;
+  }
+
+  @Override
+  public void setWritabilityHandler(Consumer<Boolean> handler) {
+    this.writabilityHandler = handler;
+  }
+
+  /**
+   * Signal the writability of the transport changed.
+   *
+   * @param writable the new writability
+   */
+  public void onWritabilityChanged(boolean writable) {
+    Consumer<Boolean> handler = writabilityHandler;
+    if (handler != null) {
+      handler.accept(writable);
+    }
+  }
+
   @Override
   public void setCloseHandler(Consumer<Void> closeHandler) {
     this.closeHandler = closeHandler;
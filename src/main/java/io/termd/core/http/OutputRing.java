@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.http;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A bounded ring of the last bytes written to a connection, the bytes are addressed by their offset in the
+ * output since the connection was opened.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class OutputRing {
+
+  private final byte[] buffer;
+  private long end;
+
+  /**
+   * @param capacity the number of bytes retained
+   */
+  public OutputRing(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.buffer = new byte[capacity];
+  }
+
+  public int capacity() {
+    return buffer.length;
+  }
+
+  /**
+   * @return the offset of the oldest byte retained
+   */
+  public long start() {
+    return Math.max(0, end - buffer.length);
+  }
+
+  /**
+   * @return the offset of the next byte written
+   */
+  public long end() {
+    return end;
+  }
+
+  /**
+   * Append the remaining bytes of a buffer, the oldest bytes are dropped when the ring is full.
+   *
+   * @param src the bytes
+   */
+  public void write(ByteBuffer src) {
+    int len = src.remaining();
+    if (len > buffer.length) {
+      src.position(src.position() + len - buffer.length);
+      end += len - buffer.length;
+      len = buffer.length;
+    }
+    int pos = (int) (end % buffer.length);
+    int first = Math.min(len, buffer.length - pos);
+    src.get(buffer, pos, first);
+    src.get(buffer, 0, len - first);
+    end += len;
+  }
+
+  /**
+   * @param offset the byte offset between {@link #start()} and {@link #end()}
+   * @return the byte at this offset
+   */
+  public byte get(long offset) {
+    checkOffset(offset);
+    return buffer[(int) (offset % buffer.length)];
+  }
+
+  /**
+   * Read the bytes from an offset to {@link #end()}.
+   *
+   * @param offset the offset between {@link #start()} and {@link #end()}
+   * @return the bytes
+   */
+  public byte[] read(long offset) {
+    checkOffset(offset);
+    byte[] data = new byte[(int) (end - offset)];
+    int pos = (int) (offset % buffer.length);
+    int first = Math.min(data.length, buffer.length - pos);
+    System.arraycopy(buffer, pos, data, 0, first);
+    System.arraycopy(buffer, 0, data, first, data.length - first);
+    return data;
+  }
+
+  private void checkOffset(long offset) {
+    if (offset < start() || offset > end) {
+      throw new IndexOutOfBoundsException("Offset " + offset + " not in [" + start() + "," + end + "]");
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.http;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The resumable sessions of a server: a connection whose transport is lost is kept alive during a grace period
+ * and records its output in an {@link OutputRing}, a client presenting the session token within the grace period
+ * is reattached to the connection.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class SessionRegistry {
+
+  private final ConcurrentMap<String, HttpTtyConnection> sessions = new ConcurrentHashMap<>();
+  private final SecureRandom random = new SecureRandom();
+  private final long gracePeriod;
+  private final int bufferSize;
+
+  /**
+   * @param gracePeriod the time in milliseconds a detached session is kept
+   * @param bufferSize the size of the output ring of a session
+   */
+  public SessionRegistry(long gracePeriod, int bufferSize) {
+    this.gracePeriod = gracePeriod;
+    this.bufferSize = bufferSize;
+  }
+
+  public long getGracePeriod() {
+    return gracePeriod;
+  }
+
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * Register a session.
+   *
+   * @param conn the session connection
+   * @return the session token
+   */
+  public String add(HttpTtyConnection conn) {
+    byte[] bytes = new byte[16];
+    String token;
+    do {
+      random.nextBytes(bytes);
+      token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    } while (sessions.putIfAbsent(token, conn) != null);
+    return token;
+  }
+
+  /**
+   * @return the connection of a session or {@code null}
+   */
+  public HttpTtyConnection get(String token) {
+    return sessions.get(token);
+  }
+
+  /**
+   * Unregister a session.
+   *
+   * @return true when the session was removed
+   */
+  public boolean remove(String token, HttpTtyConnection conn) {
+    return sessions.remove(token, conn);
+  }
+
+  /**
+   * @return the number of sessions
+   */
+  public int size() {
+    return sessions.size();
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.termd.core.http.HttpTtyConnection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the output of a connection written within a time window in a single websocket frame. The frame is sent
+ * when the window elapses or when its size reaches a limit, a window of {@code 0} sends each output in its own frame.
+ * It must be used from its executor.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+class FrameBatcher {
+
+  private final ChannelHandlerContext context;
+  private final EventExecutor executor;
+  private final boolean binary;
+  private final long delay;
+  private final int maxSize;
+  private final Runnable flushTask = this::flush;
+  private ByteBuf frame;
+  private ScheduledFuture<?> scheduledFlush;
+
+  /**
+   * @param context the channel context
+   * @param executor the executor scheduling the delayed frames
+   * @param binary true for frames of the binary protocol
+   * @param delay the window in milliseconds
+   * @param maxSize the frame size that triggers sending the frame
+   */
+  FrameBatcher(ChannelHandlerContext context, EventExecutor executor, boolean binary, long delay, int maxSize) {
+    this.context = context;
+    this.executor = executor;
+    this.binary = binary;
+    this.delay = delay;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * @return the buffer of the current frame where the output is appended
+   */
+  ByteBuf buffer() {
+    if (frame == null) {
+      frame = context.alloc().buffer();
+      if (binary) {
+        frame.writeByte(HttpTtyConnection.OP_DATA);
+      }
+    }
+    return frame;
+  }
+
+  /**
+   * Signal output was appended to the {@link #buffer()}.
+   */
+  void written() {
+    if (delay == 0 || frame.readableBytes() >= maxSize) {
+      flush();
+    } else if (scheduledFlush == null) {
+      scheduledFlush = executor.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Send the current frame.
+   */
+  void flush() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (frame != null) {
+      ByteBuf content = frame;
+      frame = null;
+      context.writeAndFlush(binary ? new BinaryWebSocketFrame(content) : new TextWebSocketFrame(content));
+    }
+  }
+
+  /**
+   * Discard the current frame.
+   */
+  void close() {
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    if (frame != null) {
+      frame.release();
+      frame = null;
+    }
+  }
+}
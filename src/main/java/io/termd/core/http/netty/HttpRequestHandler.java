@@ -16,26 +16,35 @@
 
 package io.termd.core.http.netty;
 
+import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.DateFormatter;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
-import io.netty.handler.codec.http.DefaultHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpHeaders;
-import io.netty.handler.codec.http.HttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.HttpVersion;
-import io.netty.handler.codec.http.LastHttpContent;
-import io.termd.core.http.HttpTtyConnection;
+import io.netty.handler.codec.http.QueryStringDecoder;
 import io.termd.core.util.Logging;
 
-import java.io.InputStream;
-import java.net.URL;
+import java.util.Date;
+import java.util.logging.Level;
 
 /**
+ * Serves the static assets of the terminal page and passes the websocket upgrade request to the next handler.<p>
+ *
+ * The assets are cached in memory, the responses carry an etag and a last modified date for conditional requests
+ * and the gzip or brotli variant of an asset is sent to the clients accepting it. The connection is kept alive
+ * when the client requests it.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
@@ -48,59 +57,79 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
 
   @Override
   protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) throws Exception {
-    if (wsUri.equalsIgnoreCase(request.getUri())) {
+    if (wsUri.equalsIgnoreCase(request.uri())) {
       ctx.fireChannelRead(request.retain());
     } else {
-      if (HttpHeaders.is100ContinueExpected(request)) {
+      if (HttpUtil.is100ContinueExpected(request)) {
         send100Continue(ctx);
       }
+      FullHttpResponse response;
+      HttpMethod method = request.method();
+      if (method.equals(HttpMethod.GET) || method.equals(HttpMethod.HEAD)) {
+        String path = new QueryStringDecoder(request.uri()).path();
+        if ("/".equals(path)) {
+          path = "/index.html";
+        }
+        try {
+          StaticAsset asset = StaticAsset.get(path);
+          response = asset != null ? response(request, asset) : response(request, HttpResponseStatus.NOT_FOUND);
+        } catch (Exception e) {
+          Logging.IO_ERROR.log(Level.SEVERE, "Could not load asset " + path, e);
+          response = response(request, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        }
+      } else {
+        response = response(request, HttpResponseStatus.METHOD_NOT_ALLOWED);
+        response.headers().set(HttpHeaderNames.ALLOW, "GET, HEAD");
+      }
+      boolean keepAlive = HttpUtil.isKeepAlive(request);
+      HttpUtil.setKeepAlive(response, keepAlive);
+      ChannelFuture future = ctx.writeAndFlush(response);
+      if (!keepAlive) {
+        future.addListener(ChannelFutureListener.CLOSE);
+      }
+    }
+  }
 
-      HttpResponse response = new DefaultHttpResponse(request.getProtocolVersion(), HttpResponseStatus.INTERNAL_SERVER_ERROR);
+  private static FullHttpResponse response(FullHttpRequest request, HttpResponseStatus status) {
+    FullHttpResponse response = new DefaultFullHttpResponse(request.protocolVersion(), status, Unpooled.EMPTY_BUFFER);
+    HttpUtil.setContentLength(response, 0);
+    return response;
+  }
 
-      String path = request.getUri();
-      if ("/".equals(path)) {
-        path = "/index.html";
+  private static FullHttpResponse response(FullHttpRequest request, StaticAsset asset) {
+    HttpHeaders headers = request.headers();
+    String encoding = asset.encoding(headers.get(HttpHeaderNames.ACCEPT_ENCODING));
+    String ifNoneMatch = headers.get(HttpHeaderNames.IF_NONE_MATCH);
+    boolean notModified;
+    if (ifNoneMatch != null) {
+      notModified = asset.matches(ifNoneMatch, encoding);
+    } else {
+      String header = headers.get(HttpHeaderNames.IF_MODIFIED_SINCE);
+      Date ifModifiedSince = header != null ? DateFormatter.parseHttpDate(header) : null;
+      notModified = ifModifiedSince != null && asset.lastModified <= ifModifiedSince.getTime();
+    }
+    FullHttpResponse response;
+    if (notModified) {
+      response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.NOT_MODIFIED,
+          Unpooled.EMPTY_BUFFER);
+    } else {
+      boolean head = request.method().equals(HttpMethod.HEAD);
+      response = new DefaultFullHttpResponse(request.protocolVersion(), HttpResponseStatus.OK,
+          head ? Unpooled.EMPTY_BUFFER : asset.content(encoding));
+      HttpUtil.setContentLength(response, asset.length(encoding));
+      if (asset.contentType != null) {
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, asset.contentType);
       }
-      URL res = HttpTtyConnection.class.getResource("/io/termd/core/http" + path);
-      try {
-        if (res != null) {
-          DefaultFullHttpResponse fullResp = new DefaultFullHttpResponse(request.getProtocolVersion(), HttpResponseStatus.OK);
-          InputStream in = res.openStream();
-          byte[] tmp = new byte[256];
-          for (int l = 0; l != -1; l = in.read(tmp)) {
-            fullResp.content().writeBytes(tmp, 0, l);
-          }
-          int li = path.lastIndexOf('.');
-          if (li != -1 && li != path.length() - 1) {
-            String ext = path.substring(li + 1, path.length());
-            String contentType;
-            switch (ext) {
-              case "html":
-                contentType = "text/html";
-                break;
-              case "js":
-                contentType = "application/javascript";
-                break;
-              default:
-                contentType = null;
-                break;
-            }
-            if (contentType != null) {
-              fullResp.headers().set(HttpHeaders.Names.CONTENT_TYPE, contentType);
-            }
-          }
-          response = fullResp;
-        } else {
-          response.setStatus(HttpResponseStatus.NOT_FOUND);
-        }
-      } catch (Exception e) {
-        e.printStackTrace();
-      } finally {
-        ctx.write(response);
-        ChannelFuture future = ctx.writeAndFlush(LastHttpContent.EMPTY_LAST_CONTENT);
-        future.addListener(ChannelFutureListener.CLOSE);
+      if (encoding != null) {
+        response.headers().set(HttpHeaderNames.CONTENT_ENCODING, encoding);
       }
     }
+    response.headers()
+        .set(HttpHeaderNames.ETAG, asset.etag(encoding))
+        .set(HttpHeaderNames.LAST_MODIFIED, asset.lastModifiedHeader)
+        .set(HttpHeaderNames.CACHE_CONTROL, HttpHeaderValues.NO_CACHE)
+        .set(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+    return response;
   }
 
   private static void send100Continue(ChannelHandlerContext ctx) {
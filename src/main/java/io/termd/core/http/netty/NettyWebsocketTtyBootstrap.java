@@ -19,7 +19,9 @@ package io.termd.core.http.netty;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -29,6 +31,7 @@ import io.netty.handler.logging.LoggingHandler;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.GenericFutureListener;
 import io.netty.util.concurrent.ImmediateEventExecutor;
+import io.termd.core.http.SessionRegistry;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.util.Helper;
 
@@ -42,11 +45,27 @@ import java.util.function.Consumer;
  */
 public class NettyWebsocketTtyBootstrap {
 
+  /**
+   * The default size of a merged output frame.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 16 * 1024;
+
+  /**
+   * The default size of the output kept by a resumable session.
+   */
+  public static final int DEFAULT_SESSION_BUFFER_SIZE = 64 * 1024;
+
   private final ChannelGroup channelGroup = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
   private String host;
   private int port;
   private EventLoopGroup group;
   private Channel channel;
+  private WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.DEFAULT;
+  private boolean compression;
+  private long batchDelay;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private long sessionGracePeriod;
+  private int sessionBufferSize = DEFAULT_SESSION_BUFFER_SIZE;
 
   public NettyWebsocketTtyBootstrap() {
     this.host = "localhost";
@@ -71,14 +90,111 @@ public class NettyWebsocketTtyBootstrap {
     return this;
   }
 
+  public WriteBufferWaterMark getWriteBufferWaterMark() {
+    return writeBufferWaterMark;
+  }
+
+  /**
+   * Set the low and high water marks of the connection output buffer, a connection becomes not writable when
+   * its buffered output exceeds the high water mark and writable again when it drops below the low water mark.
+   *
+   * @param writeBufferWaterMark the water marks
+   * @return this object
+   */
+  public NettyWebsocketTtyBootstrap setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+    this.writeBufferWaterMark = writeBufferWaterMark;
+    return this;
+  }
+
+  public boolean isCompression() {
+    return compression;
+  }
+
+  /**
+   * Set whether the server accepts the permessage-deflate extension (RFC 7692) compressing the frames of the
+   * clients that negotiate it.
+   *
+   * @param compression true to accept the extension
+   * @return this object
+   */
+  public NettyWebsocketTtyBootstrap setCompression(boolean compression) {
+    this.compression = compression;
+    return this;
+  }
+
+  public long getBatchDelay() {
+    return batchDelay;
+  }
+
+  /**
+   * Set the delay during which the output of a connection is merged in a single frame, for instance {@code 5}
+   * milliseconds, the default {@code 0} sends each output in its own frame.
+   *
+   * @param batchDelay the delay in milliseconds
+   * @return this object
+   */
+  public NettyWebsocketTtyBootstrap setBatchDelay(long batchDelay) {
+    this.batchDelay = batchDelay;
+    return this;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Set the size of a merged output frame that triggers sending it before the batch delay elapses.
+   *
+   * @param batchSize the size in bytes
+   * @return this object
+   */
+  public NettyWebsocketTtyBootstrap setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+    return this;
+  }
+
+  public long getSessionGracePeriod() {
+    return sessionGracePeriod;
+  }
+
+  /**
+   * Set the time a session is kept after its websocket is closed, a client of the binary protocol reconnecting
+   * with the session token within this period resumes the session and receives the output it missed. The
+   * default {@code 0} disables resumable sessions.
+   *
+   * @param sessionGracePeriod the grace period in milliseconds
+   * @return this object
+   */
+  public NettyWebsocketTtyBootstrap setSessionGracePeriod(long sessionGracePeriod) {
+    this.sessionGracePeriod = sessionGracePeriod;
+    return this;
+  }
+
+  public int getSessionBufferSize() {
+    return sessionBufferSize;
+  }
+
+  /**
+   * Set the size of the output kept by a resumable session, the output older than this size cannot be resumed.
+   *
+   * @param sessionBufferSize the size in bytes
+   * @return this object
+   */
+  public NettyWebsocketTtyBootstrap setSessionBufferSize(int sessionBufferSize) {
+    this.sessionBufferSize = sessionBufferSize;
+    return this;
+  }
+
   public void start(Consumer<TtyConnection> handler, Consumer<Throwable> doneHandler) {
     group = new NioEventLoopGroup();
+    SessionRegistry sessions = sessionGracePeriod > 0 ? new SessionRegistry(sessionGracePeriod, sessionBufferSize) : null;
 
     ServerBootstrap b = new ServerBootstrap();
     b.group(group)
         .channel(NioServerSocketChannel.class)
         .handler(new LoggingHandler(LogLevel.INFO))
-        .childHandler(new TtyServerInitializer(channelGroup, handler));
+        .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
+        .childHandler(new TtyServerInitializer(channelGroup, handler, compression, batchDelay, batchSize, sessions));
 
     ChannelFuture f = b.bind(host, port);
     f.addListener(abc -> {
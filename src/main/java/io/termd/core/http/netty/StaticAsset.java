@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.DateFormatter;
+import io.termd.core.http.HttpTtyConnection;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A static asset loaded once from the classpath in read-only direct buffers, with its gzip variant and its
+ * brotli variant when a pre-compressed {@code .br} resource is provided.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+class StaticAsset {
+
+  private static final String BASE = "/io/termd/core/http";
+  private static final ConcurrentMap<String, StaticAsset> CACHE = new ConcurrentHashMap<>();
+  private static final int MAX_MISSING = 1024;
+  private static final ConcurrentMap<String, Boolean> MISSING = new ConcurrentHashMap<>();
+
+  /**
+   * Lookup an asset, the assets found and a bounded number of the paths not found are cached.
+   *
+   * @param path the asset path
+   * @return the asset or {@code null} when it does not exist
+   */
+  static StaticAsset get(String path) throws IOException {
+    StaticAsset asset = CACHE.get(path);
+    if (asset == null) {
+      if (!path.startsWith("/") || path.contains("..") || path.endsWith(".class") || MISSING.containsKey(path)) {
+        return null;
+      }
+      URL url = HttpTtyConnection.class.getResource(BASE + path);
+      if (url == null) {
+        if (MISSING.size() >= MAX_MISSING) {
+          // Arbitrary paths must not grow the cache without bound
+          MISSING.clear();
+        }
+        MISSING.put(path, Boolean.TRUE);
+        return null;
+      }
+      asset = new StaticAsset(path, url);
+      StaticAsset prev = CACHE.putIfAbsent(path, asset);
+      if (prev != null) {
+        asset.release();
+        asset = prev;
+      }
+    }
+    return asset;
+  }
+
+  final String contentType;
+  final String etag;
+  final long lastModified;
+  final String lastModifiedHeader;
+  private final ByteBuf identity;
+  private final ByteBuf gzip;
+  private final ByteBuf brotli;
+
+  private StaticAsset(String path, URL url) throws IOException {
+    URLConnection conn = url.openConnection();
+    long time = conn.getLastModified();
+    byte[] data;
+    try (InputStream in = conn.getInputStream()) {
+      data = readAll(in);
+    }
+    URL brotliUrl = HttpTtyConnection.class.getResource(BASE + path + ".br");
+    byte[] brotliData = null;
+    if (brotliUrl != null) {
+      try (InputStream in = brotliUrl.openStream()) {
+        brotliData = readAll(in);
+      }
+    }
+    // Rounded to seconds as the http dates
+    lastModified = ((time > 0 ? time : System.currentTimeMillis()) / 1000) * 1000;
+    lastModifiedHeader = DateFormatter.format(new Date(lastModified));
+    contentType = contentType(path);
+    etag = etag(data);
+    identity = buffer(data);
+    gzip = buffer(gzip(data));
+    brotli = brotliData != null ? buffer(brotliData) : null;
+  }
+
+  /**
+   * Select the smallest representation accepted by a client.
+   *
+   * @param acceptEncoding the accept-encoding request header
+   * @return the content encoding or {@code null} for the identity
+   */
+  String encoding(String acceptEncoding) {
+    if (acceptEncoding != null) {
+      if (brotli != null && brotli.readableBytes() < identity.readableBytes() && accepts(acceptEncoding, "br")) {
+        return "br";
+      }
+      if (gzip.readableBytes() < identity.readableBytes() && accepts(acceptEncoding, "gzip")) {
+        return "gzip";
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the etag of a representation
+   */
+  String etag(String encoding) {
+    return encoding == null ? etag : etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+  }
+
+  /**
+   * @return a retained duplicate of the content of a representation
+   */
+  ByteBuf content(String encoding) {
+    return buffer(encoding).retainedDuplicate();
+  }
+
+  /**
+   * @return the length of a representation
+   */
+  int length(String encoding) {
+    return buffer(encoding).readableBytes();
+  }
+
+  private ByteBuf buffer(String encoding) {
+    return encoding == null ? identity : "br".equals(encoding) ? brotli : gzip;
+  }
+
+  /**
+   * @return whether an if-none-match request header matches the representation of this asset
+   */
+  boolean matches(String ifNoneMatch, String encoding) {
+    String etag = etag(encoding);
+    for (String tag : ifNoneMatch.split(",")) {
+      tag = tag.trim();
+      if (tag.startsWith("W/")) {
+        tag = tag.substring(2);
+      }
+      if (tag.equals("*") || tag.equals(etag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void release() {
+    identity.release();
+    gzip.release();
+    if (brotli != null) {
+      brotli.release();
+    }
+  }
+
+  static boolean accepts(String acceptEncoding, String coding) {
+    for (String item : acceptEncoding.split(",")) {
+      String[] params = item.split(";");
+      String name = params[0].trim();
+      if (name.equalsIgnoreCase(coding) || name.equals("*")) {
+        for (int i = 1;i < params.length;i++) {
+          String param = params[i].trim();
+          if (param.startsWith("q=")) {
+            try {
+              if (Double.parseDouble(param.substring(2).trim()) == 0) {
+                return false;
+              }
+            } catch (NumberFormatException ignore) {
+            }
+          }
+        }
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String contentType(String path) {
+    int li = path.lastIndexOf('.');
+    if (li != -1 && li != path.length() - 1) {
+      switch (path.substring(li + 1)) {
+        case "html":
+          return "text/html";
+        case "js":
+          return "application/javascript";
+      }
+    }
+    return null;
+  }
+
+  private static String etag(byte[] data) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(data);
+      StringBuilder sb = new StringBuilder("\"");
+      for (int i = 0;i < 8;i++) {
+        sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16)).append(Character.forDigit(digest[i] & 0xF, 16));
+      }
+      return sb.append('"').toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  private static ByteBuf buffer(byte[] data) {
+    return Unpooled.directBuffer(data.length).writeBytes(data).asReadOnly();
+  }
+
+  private static byte[] gzip(byte[] data) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(data);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int l = in.read(buffer);l != -1;l = in.read(buffer)) {
+      out.write(buffer, 0, l);
+    }
+    return out.toByteArray();
+  }
+}
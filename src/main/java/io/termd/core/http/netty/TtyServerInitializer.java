@@ -23,7 +23,10 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.WebSocketServerCompressionHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.termd.core.http.HttpTtyConnection;
+import io.termd.core.http.SessionRegistry;
 import io.termd.core.tty.TtyConnection;
 
 import java.util.function.Consumer;
@@ -35,10 +38,43 @@ public class TtyServerInitializer extends ChannelInitializer<SocketChannel> {
 
   private final ChannelGroup group;
   private final Consumer<TtyConnection> handler;
+  private final boolean compression;
+  private final long batchDelay;
+  private final int batchSize;
+  private final SessionRegistry sessions;
 
   public TtyServerInitializer(ChannelGroup group, Consumer<TtyConnection> handler) {
+    this(group, handler, false, 0, NettyWebsocketTtyBootstrap.DEFAULT_BATCH_SIZE);
+  }
+
+  /**
+   * @param group the channel group
+   * @param handler the connection handler
+   * @param compression true to accept the permessage-deflate extension
+   * @param batchDelay the delay in milliseconds during which the output is merged in a single frame
+   * @param batchSize the size of a merged frame that triggers sending it
+   */
+  public TtyServerInitializer(ChannelGroup group, Consumer<TtyConnection> handler, boolean compression,
+                              long batchDelay, int batchSize) {
+    this(group, handler, compression, batchDelay, batchSize, null);
+  }
+
+  /**
+   * @param group the channel group
+   * @param handler the connection handler
+   * @param compression true to accept the permessage-deflate extension
+   * @param batchDelay the delay in milliseconds during which the output is merged in a single frame
+   * @param batchSize the size of a merged frame that triggers sending it
+   * @param sessions the registry of the resumable sessions or {@code null}
+   */
+  public TtyServerInitializer(ChannelGroup group, Consumer<TtyConnection> handler, boolean compression,
+                              long batchDelay, int batchSize, SessionRegistry sessions) {
     this.group = group;
     this.handler = handler;
+    this.compression = compression;
+    this.batchDelay = batchDelay;
+    this.batchSize = batchSize;
+    this.sessions = sessions;
   }
 
   @Override
@@ -48,7 +84,10 @@ public class TtyServerInitializer extends ChannelInitializer<SocketChannel> {
     pipeline.addLast(new ChunkedWriteHandler());
     pipeline.addLast(new HttpObjectAggregator(64 * 1024));
     pipeline.addLast(new HttpRequestHandler("/ws"));
-    pipeline.addLast(new WebSocketServerProtocolHandler("/ws"));
-    pipeline.addLast(new TtyWebSocketFrameHandler(group, handler));
+    if (compression) {
+      pipeline.addLast(new WebSocketServerCompressionHandler());
+    }
+    pipeline.addLast(new WebSocketServerProtocolHandler("/ws", HttpTtyConnection.BINARY_PROTOCOL, compression));
+    pipeline.addLast(new TtyWebSocketFrameHandler(group, handler, batchDelay, batchSize, sessions));
   }
 }
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.http.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.ScheduledFuture;
+import io.termd.core.http.HttpTtyConnection;
+import io.termd.core.http.OutputRing;
+import io.termd.core.http.SessionRegistry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * A connection over a websocket channel.<p>
+ *
+ * A resumable connection is registered in a {@link SessionRegistry} and records its output in an
+ * {@link OutputRing}, when its channel is closed the connection is detached and kept during the grace period
+ * of the registry, a new channel presenting the session token is attached to it and receives the output from the
+ * offset the client received. A channel presenting the token while the channel attached is still active is closed,
+ * so a session cannot be taken over from a live client.<p>
+ *
+ * The connection runs on the event loop of its first channel, the attached channels may use other event loops.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+class TtyWebSocketConnection extends HttpTtyConnection {
+
+  private final EventExecutor executor;
+  private final long batchDelay;
+  private final int batchSize;
+  private final SessionRegistry sessions;
+  private final OutputRing ring;
+  private final String token;
+  private ChannelHandlerContext context;
+  private boolean binary;
+  private FrameBatcher batcher;
+  private volatile boolean writable = true;
+  private ScheduledFuture<?> expiration;
+  private boolean closed;
+  private boolean ended;
+
+  /**
+   * Create a connection attached to a channel.
+   *
+   * @param context the channel context
+   * @param binary true when the client negotiated the binary protocol
+   * @param batchDelay the delay in milliseconds during which the output is merged in a single frame
+   * @param batchSize the size of a merged frame that triggers sending it
+   * @param sessions the registry of a resumable connection or {@code null}
+   */
+  TtyWebSocketConnection(ChannelHandlerContext context, boolean binary, long batchDelay, int batchSize,
+                         SessionRegistry sessions) {
+    this.executor = context.executor();
+    this.batchDelay = batchDelay;
+    this.batchSize = batchSize;
+    this.sessions = sessions;
+    if (sessions != null) {
+      ring = new OutputRing(sessions.getBufferSize());
+      token = sessions.add(this);
+    } else {
+      ring = null;
+      token = null;
+    }
+    attach(context, binary, 0);
+  }
+
+  /**
+   * @return the session token of a resumable connection or {@code null}
+   */
+  String token() {
+    return token;
+  }
+
+  EventExecutor executor() {
+    return executor;
+  }
+
+  /**
+   * Attach a channel, the channel is closed when the channel currently attached is still active. It must be called
+   * from the connection executor.
+   *
+   * @param ctx the channel context
+   * @param binary true when the client negotiated the binary protocol
+   * @param offset the output offset the client received
+   */
+  void attach(ChannelHandlerContext ctx, boolean binary, long offset) {
+    if (ended || (context != null && context.channel().isActive())) {
+      ctx.close();
+      return;
+    }
+    if (expiration != null) {
+      expiration.cancel(false);
+      expiration = null;
+    }
+    if (context != null) {
+      // The channel is closed but not yet detached
+      batcher.close();
+    }
+    context = ctx;
+    this.binary = binary;
+    batcher = new FrameBatcher(ctx, executor, binary, batchDelay, batchSize);
+    if (ring != null) {
+      long from = Math.min(Math.max(offset, ring.start()), ring.end());
+      if (from > offset) {
+        // The output was partially overwritten, resume at a character boundary
+        while (from < ring.end() && (ring.get(from) & 0xC0) == 0x80) {
+          from++;
+        }
+      }
+      byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+      ByteBuf session = ctx.alloc().buffer(9 + tokenBytes.length);
+      session.writeByte(OP_SESSION);
+      session.writeLong(from);
+      session.writeBytes(tokenBytes);
+      ctx.write(new BinaryWebSocketFrame(session));
+      byte[] missed = ring.read(from);
+      if (missed.length > 0) {
+        batcher.buffer().writeBytes(missed);
+      }
+      batcher.flush();
+      ctx.flush();
+    }
+    writabilityChanged(ctx, ctx.channel().isWritable());
+  }
+
+  /**
+   * Detach a channel that was closed, a resumable connection is kept during the grace period of its registry
+   * otherwise it is closed. It must be called from the connection executor.
+   *
+   * @param ctx the channel context
+   */
+  void detach(ChannelHandlerContext ctx) {
+    if (context != ctx) {
+      return;
+    }
+    batcher.close();
+    batcher = null;
+    context = null;
+    if (closed || ring == null) {
+      end();
+    } else {
+      expiration = executor.schedule(this::end, sessions.getGracePeriod(), TimeUnit.MILLISECONDS);
+      writabilityChanged(null, true);
+    }
+  }
+
+  /**
+   * Handle a frame received by a channel, the frames of a channel that is not attached are ignored. It must be
+   * called from the channel event loop.
+   *
+   * @param ctx the channel context
+   * @param frame the frame
+   */
+  void read(ChannelHandlerContext ctx, WebSocketFrame frame) {
+    if (executor.inEventLoop()) {
+      if (context != ctx) {
+        return;
+      }
+      if (frame instanceof BinaryWebSocketFrame) {
+        writeBinaryMessage(frame.content().nioBuffer());
+      } else if (frame instanceof TextWebSocketFrame) {
+        writeJsonMessage(frame.content());
+      }
+    } else {
+      frame.retain();
+      executor.execute(() -> {
+        try {
+          read(ctx, frame);
+        } finally {
+          frame.release();
+        }
+      });
+    }
+  }
+
+  /**
+   * Signal the writability of a channel changed. It must be called from the connection executor.
+   */
+  void writabilityChanged(ChannelHandlerContext ctx, boolean writable) {
+    if (context == ctx && this.writable != writable) {
+      this.writable = writable;
+      onWritabilityChanged(writable);
+    }
+  }
+
+  private void end() {
+    if (!ended) {
+      ended = true;
+      if (expiration != null) {
+        expiration.cancel(false);
+        expiration = null;
+      }
+      if (token != null) {
+        sessions.remove(token, this);
+      }
+      Consumer<Void> closeHandler = getCloseHandler();
+      if (closeHandler != null) {
+        closeHandler.accept(null);
+      }
+    }
+  }
+
+  @Override
+  protected void write(byte[] buffer) {
+    if (executor.inEventLoop()) {
+      if (ring != null) {
+        ring.write(ByteBuffer.wrap(buffer));
+      }
+      if (context != null) {
+        batcher.buffer().writeBytes(buffer);
+        batcher.written();
+      }
+    } else {
+      execute(() -> write(buffer));
+    }
+  }
+
+  @Override
+  protected void writeCodePoints(int[] codePoints) {
+    if (context != null) {
+      ByteBuf buffer = batcher.buffer();
+      int index = buffer.writerIndex();
+      encoder().encode(codePoints, 0, codePoints.length, buffer);
+      if (ring != null) {
+        ring.write(buffer.nioBuffer(index, buffer.writerIndex() - index));
+      }
+      batcher.written();
+    } else if (ring != null) {
+      ByteBuf buffer = Unpooled.buffer(encoder().maxEncodedLength(codePoints, 0, codePoints.length));
+      encoder().encode(codePoints, 0, codePoints.length, buffer);
+      ring.write(buffer.nioBuffer());
+      buffer.release();
+    }
+  }
+
+  @Override
+  protected void writePong(ByteBuffer payload) {
+    if (context != null) {
+      batcher.flush();
+      ByteBuf byteBuf = context.alloc().buffer(1 + payload.remaining());
+      byteBuf.writeByte(OP_PONG);
+      byteBuf.writeBytes(payload);
+      context.writeAndFlush(new BinaryWebSocketFrame(byteBuf));
+    }
+  }
+
+  @Override
+  public boolean isWritable() {
+    return writable;
+  }
+
+  @Override
+  protected boolean inExecutor() {
+    return executor.inEventLoop();
+  }
+
+  @Override
+  public void schedule(Runnable task, long delay, TimeUnit unit) {
+    executor.schedule(task, delay, unit);
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    executor.execute(task);
+  }
+
+  @Override
+  public void close() {
+    executeAfterOutput(() -> {
+      closed = true;
+      if (context != null) {
+        batcher.flush();
+        context.close();
+      } else {
+        end();
+      }
+    });
+  }
+}
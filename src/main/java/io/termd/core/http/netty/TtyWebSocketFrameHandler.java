@@ -16,88 +16,142 @@
 
 package io.termd.core.http.netty;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import io.netty.channel.group.ChannelGroup;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.termd.core.http.HttpTtyConnection;
+import io.termd.core.http.SessionRegistry;
 import io.termd.core.tty.TtyConnection;
 
-import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
+ * Handles the websocket frames of a connection, the binary protocol is used when the client negotiated
+ * the {@link HttpTtyConnection#BINARY_PROTOCOL} subprotocol, otherwise the json protocol is used. When a
+ * {@link SessionRegistry} is configured, a binary client resumes its session by offering the
+ * {@link HttpTtyConnection#RESUME_PROTOCOL} subprotocol carrying its offset and its session token, the token is
+ * kept out of the uri so it does not end up in the access logs.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class TtyWebSocketFrameHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
 
   private final ChannelGroup group;
   private final Consumer<TtyConnection> handler;
-  private ChannelHandlerContext context;
-  private HttpTtyConnection conn;
+  private final long batchDelay;
+  private final int batchSize;
+  private final SessionRegistry sessions;
+  private TtyWebSocketConnection conn;
 
   public TtyWebSocketFrameHandler(ChannelGroup group, Consumer<TtyConnection> handler) {
-    this.group = group;
-    this.handler = handler;
+    this(group, handler, 0, NettyWebsocketTtyBootstrap.DEFAULT_BATCH_SIZE, null);
   }
 
-  @Override
-  public void channelActive(ChannelHandlerContext ctx) throws Exception {
-    super.channelActive(ctx);
-    context = ctx;
+  public TtyWebSocketFrameHandler(ChannelGroup group, Consumer<TtyConnection> handler, long batchDelay, int batchSize) {
+    this(group, handler, batchDelay, batchSize, null);
+  }
+
+  /**
+   * @param group the channel group
+   * @param handler the connection handler
+   * @param batchDelay the delay in milliseconds during which the output is merged in a single frame
+   * @param batchSize the size of a merged frame that triggers sending it
+   * @param sessions the registry of the resumable sessions or {@code null}
+   */
+  public TtyWebSocketFrameHandler(ChannelGroup group, Consumer<TtyConnection> handler, long batchDelay, int batchSize,
+                                  SessionRegistry sessions) {
+    this.group = group;
+    this.handler = handler;
+    this.batchDelay = batchDelay;
+    this.batchSize = batchSize;
+    this.sessions = sessions;
   }
 
   @Override
   public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
-    if (evt == WebSocketServerProtocolHandler.ServerHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+    if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
+      WebSocketServerProtocolHandler.HandshakeComplete handshake = (WebSocketServerProtocolHandler.HandshakeComplete) evt;
       ctx.pipeline().remove(HttpRequestHandler.class);
       group.add(ctx.channel());
-      conn = new HttpTtyConnection() {
-        @Override
-        protected void write(byte[] buffer) {
-          ByteBuf byteBuf = Unpooled.buffer();
-          byteBuf.writeBytes(buffer);
-          context.writeAndFlush(new TextWebSocketFrame(byteBuf));
+      boolean binary = HttpTtyConnection.BINARY_PROTOCOL.equals(handshake.selectedSubprotocol());
+      if (sessions != null && binary) {
+        // Resumption is only possible with the binary protocol that carries the session token
+        String protocols = handshake.requestHeaders().get(HttpHeaderNames.SEC_WEBSOCKET_PROTOCOL);
+        if (protocols != null) {
+          for (String protocol : protocols.split(",")) {
+            if (resume(ctx, protocol.trim())) {
+              return;
+            }
+          }
         }
-
-        @Override
-        public void schedule(Runnable task, long delay, TimeUnit unit) {
-          context.executor().schedule(task, delay, unit);
-        }
-
-        @Override
-        public void execute(Runnable task) {
-          context.executor().execute(task);
-        }
-
-        @Override
-        public void close() {
-          context.close();
-        }
-      };
+      }
+      conn = new TtyWebSocketConnection(ctx, binary, batchDelay, batchSize, binary ? sessions : null);
       handler.accept(conn);
     } else {
       super.userEventTriggered(ctx, evt);
     }
   }
 
+  /**
+   * Resume the session of a {@link HttpTtyConnection#RESUME_PROTOCOL} subprotocol.
+   *
+   * @return true when the subprotocol designates a session
+   */
+  private boolean resume(ChannelHandlerContext ctx, String protocol) {
+    if (!protocol.startsWith(HttpTtyConnection.RESUME_PROTOCOL)) {
+      return false;
+    }
+    int sep = protocol.indexOf('.', HttpTtyConnection.RESUME_PROTOCOL.length());
+    if (sep == -1) {
+      return false;
+    }
+    long offset;
+    try {
+      offset = Long.parseLong(protocol.substring(HttpTtyConnection.RESUME_PROTOCOL.length(), sep));
+    } catch (NumberFormatException e) {
+      return false;
+    }
+    HttpTtyConnection session = sessions.get(protocol.substring(sep + 1));
+    if (!(session instanceof TtyWebSocketConnection)) {
+      return false;
+    }
+    TtyWebSocketConnection resumed = (TtyWebSocketConnection) session;
+    conn = resumed;
+    run(resumed, () -> resumed.attach(ctx, true, offset));
+    return true;
+  }
+
+  private static void run(TtyWebSocketConnection conn, Runnable task) {
+    if (conn.executor().inEventLoop()) {
+      task.run();
+    } else {
+      conn.execute(task);
+    }
+  }
+
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    TtyWebSocketConnection tmp = conn;
+    if (tmp != null) {
+      boolean writable = ctx.channel().isWritable();
+      run(tmp, () -> tmp.writabilityChanged(ctx, writable));
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-    HttpTtyConnection tmp = conn;
-    context = null;
+    TtyWebSocketConnection tmp = conn;
     conn = null;
     if (tmp != null) {
-      Consumer<Void> closeHandler = tmp.getCloseHandler();
-      if (closeHandler != null) {
-        closeHandler.accept(null);
-      }
+      run(tmp, () -> tmp.detach(ctx));
     }
   }
 
-  public void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame msg) throws Exception {
-    conn.writeToDecoder(msg.text());
+  public void channelRead0(ChannelHandlerContext ctx, WebSocketFrame msg) throws Exception {
+    conn.read(ctx, msg);
   }
 }
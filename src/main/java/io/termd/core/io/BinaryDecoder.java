@@ -20,39 +20,54 @@ import io.termd.core.util.Helper;
 
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.IntBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.function.Consumer;
 
 /**
+ * Decodes bytes to code points.<p>
+ *
+ * UTF-8 is decoded by a dedicated state machine, other charsets use a {@link CharsetDecoder}.<p>
+ *
+ * The decoder retains its internal buffers between writes and delivers the decoded code points to a
+ * {@link CodePointSink} with a reused array, so decoding does not allocate in steady state. When a plain
+ * {@code Consumer<int[]>} is provided instead, it receives a copy of the decoded code points.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class BinaryDecoder {
 
-  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
-
   private CharsetDecoder decoder;
+  private Utf8Decoder utf8;
   private ByteBuffer bBuf;
   private final CharBuffer cBuf;
-  private final Consumer<int[]> onChar;
+  private final int[] iBuf;
+  private final CodePointSink sink;
 
   public BinaryDecoder(Charset charset, Consumer<int[]> onChar) {
     this(2, charset, onChar);
   }
 
   public BinaryDecoder(int initialSize, Charset charset, Consumer<int[]> onChar) {
+    this(initialSize, charset, CodePointSink.of(onChar));
+  }
+
+  public BinaryDecoder(Charset charset, CodePointSink sink) {
+    this(2, charset, sink);
+  }
+
+  public BinaryDecoder(int initialSize, Charset charset, CodePointSink sink) {
     if (initialSize < 2) {
       throw new IllegalArgumentException("Initial size must be at least 2");
     }
-    decoder = charset.newDecoder();
-    decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
-    decoder.onMalformedInput(CodingErrorAction.REPLACE);
-    bBuf = EMPTY;
+    bBuf = ByteBuffer.allocate(initialSize);
     cBuf = CharBuffer.allocate(initialSize); // We need at least 2
-    this.onChar = onChar;
+    iBuf = new int[initialSize]; // A char yields at most one code point
+    this.sink = sink;
+    setCharset(charset);
   }
 
   /**
@@ -61,9 +76,21 @@ public class BinaryDecoder {
    * @param charset the new charset
    */
   public void setCharset(Charset charset) {
-    decoder = charset.newDecoder();
-    decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
-    decoder.onMalformedInput(CodingErrorAction.REPLACE);
+    if (charset.equals(StandardCharsets.UTF_8)) {
+      // Bypass the charset decoder
+      decoder = null;
+      if (utf8 == null) {
+        utf8 = new Utf8Decoder(iBuf, sink);
+      }
+    } else {
+      decoder = charset.newDecoder();
+      decoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
+      decoder.onMalformedInput(CodingErrorAction.REPLACE);
+      if (utf8 != null) {
+        utf8.reset();
+        utf8 = null;
+      }
+    }
   }
 
   public void write(byte[] data) {
@@ -72,24 +99,74 @@ public class BinaryDecoder {
 
   public void write(byte[] data, int start, int len) {
 
+    if (utf8 != null) {
+      drainUtf8();
+      utf8.write(data, start, len);
+      return;
+    }
+
     // Fill the byte buffer
-    int remaining = bBuf.remaining();
-    if (len > remaining) {
-      // Allocate a new buffer
+    ensureRemaining(len);
+    bBuf.put(data, start, len);
+    bBuf.flip();
+    drain();
+  }
+
+  /**
+   * Write the remaining bytes of a buffer, the buffer position is advanced to its limit.
+   *
+   * @param data the buffer to decode
+   */
+  public void write(ByteBuffer data) {
+
+    if (utf8 != null) {
+      drainUtf8();
+      if (data.hasArray()) {
+        utf8.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        data.position(data.limit());
+      } else {
+        // Use the byte buffer as scratch, it is empty
+        byte[] scratch = bBuf.array();
+        while (data.hasRemaining()) {
+          int len = Math.min(scratch.length, data.remaining());
+          data.get(scratch, 0, len);
+          utf8.write(scratch, 0, len);
+        }
+      }
+      return;
+    }
+
+    // Fill the byte buffer
+    ensureRemaining(data.remaining());
+    bBuf.put(data);
+    bBuf.flip();
+    drain();
+  }
+
+  private void ensureRemaining(int len) {
+    if (len > bBuf.remaining()) {
+      // Grow the buffer, it is retained for the next writes
       ByteBuffer tmp = bBuf;
-      int length = tmp.position() + len;
-      bBuf = ByteBuffer.allocate(length);
+      bBuf = ByteBuffer.allocate(Math.max(tmp.capacity() * 2, tmp.position() + len));
       tmp.flip();
       bBuf.put(tmp);
     }
-    bBuf.put(data, start, len);
-    bBuf.flip();
+  }
 
-    // Drain the byte buffer
+  private void drainUtf8() {
+    if (bBuf.position() > 0) {
+      // Bytes left by the previous charset
+      bBuf.flip();
+      utf8.write(bBuf.array(), bBuf.arrayOffset() + bBuf.position(), bBuf.remaining());
+      bBuf.clear();
+    }
+  }
+
+  private void drain() {
     while (true) {
-      IntBuffer iBuf = IntBuffer.allocate(bBuf.remaining());
       CoderResult result = decoder.decode(bBuf, cBuf, false);
       cBuf.flip();
+      int count = 0;
       while (cBuf.hasRemaining()) {
         char c = cBuf.get();
         if (Character.isSurrogate(c)) {
@@ -97,29 +174,26 @@ public class BinaryDecoder {
             if (cBuf.hasRemaining()) {
               char low = cBuf.get();
               if (Character.isLowSurrogate(low)) {
-                int codePoint = Character.toCodePoint(c, low);
-                if (Character.isValidCodePoint(codePoint)) {
-                  iBuf.put(codePoint);
-                } else {
-                  throw new UnsupportedOperationException("Handle me gracefully");
-                }
+                iBuf[count++] = Character.toCodePoint(c, low);
               } else {
-                throw new UnsupportedOperationException("Handle me gracefully");
+                iBuf[count++] = Utf8Decoder.REPLACEMENT;
+                cBuf.position(cBuf.position() - 1);
               }
             } else {
-              throw new UnsupportedOperationException("Handle me gracefully");
+              // Keep it until the low surrogate is decoded
+              cBuf.position(cBuf.position() - 1);
+              break;
             }
           } else {
-            throw new UnsupportedOperationException("Handle me gracefully");
+            iBuf[count++] = Utf8Decoder.REPLACEMENT;
           }
         } else {
-          iBuf.put((int) c);
+          iBuf[count++] = c;
         }
       }
-      iBuf.flip();
-      int[] codePoints = new int[iBuf.limit()];
-      iBuf.get(codePoints);
-      onChar.accept(codePoints);
+      if (count > 0) {
+        sink.accept(iBuf, 0, count);
+      }
       cBuf.compact();
       if (result.isOverflow()) {
         // We still have work to do
@@ -133,7 +207,10 @@ public class BinaryDecoder {
         }
         break;
       } else {
-        throw new UnsupportedOperationException("Handle me gracefully");
+        // Malformed or unmappable input the decoder did not replace, skip it
+        bBuf.position(bBuf.position() + result.length());
+        iBuf[0] = Utf8Decoder.REPLACEMENT;
+        sink.accept(iBuf, 0, 1);
       }
     }
     bBuf.compact();
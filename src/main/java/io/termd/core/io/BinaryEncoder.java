@@ -16,20 +16,45 @@
 
 package io.termd.core.io;
 
+import io.netty.buffer.ByteBuf;
+
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.function.Consumer;
 
 /**
+ * Encodes code points to bytes.<p>
+ *
+ * The encoder caches its {@link CharsetEncoder} and its buffers, it is meant to be used by a single connection
+ * and is not thread safe. The code points can be encoded straight into a caller supplied {@link ByteBuffer} or
+ * {@link ByteBuf}, UTF-8 and US-ASCII are encoded without a {@link CharsetEncoder}.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class BinaryEncoder implements Consumer<int[]> {
+public class BinaryEncoder implements CodePointSink {
 
   private volatile Charset charset;
+  private CharsetEncoder encoder;
+  private CharBuffer cBuf = CharBuffer.allocate(0);
+  private ByteBuffer bBuf = ByteBuffer.allocate(0);
   final Consumer<byte[]> onByte;
 
+  /**
+   * Create an encoder that only encodes into caller supplied buffers, it cannot be used as a {@link CodePointSink}.
+   *
+   * @param charset the charset
+   */
+  public BinaryEncoder(Charset charset) {
+    this(charset, null);
+  }
+
   public BinaryEncoder(Charset charset, Consumer<byte[]> onByte) {
     this.charset = charset;
     this.onByte = onByte;
@@ -44,24 +69,152 @@ public class BinaryEncoder implements Consumer<int[]> {
     this.charset = charset;
   }
 
+  /**
+   * @return the current charset
+   */
+  public Charset getCharset() {
+    return charset;
+  }
+
   @Override
-  public void accept(int[] codePoints) {
-    final char[] tmp = new char[2];
-    int capacity = 0;
-    for (int codePoint : codePoints) {
-      capacity += Character.charCount(codePoint);
+  public void accept(int[] codePoints, int offset, int length) {
+    if (onByte == null) {
+      throw new IllegalStateException("No byte consumer, encode into a buffer instead");
+    }
+    int max = maxEncodedLength(codePoints, offset, length);
+    if (max > bBuf.capacity()) {
+      bBuf = ByteBuffer.allocate(Math.max(max, bBuf.capacity() * 2));
+    }
+    bBuf.clear();
+    encode(codePoints, offset, length, bBuf);
+    onByte.accept(Arrays.copyOf(bBuf.array(), bBuf.position()));
+  }
+
+  /**
+   * Compute the number of bytes needed to encode a range of code points: the value is exact for valid code points
+   * in UTF-8 and US-ASCII, it is an upper bound otherwise.
+   *
+   * @param codePoints the code points
+   * @param offset the range offset
+   * @param length the range length
+   * @return the number of bytes
+   */
+  public int maxEncodedLength(int[] codePoints, int offset, int length) {
+    Charset charset = this.charset;
+    if (charset.equals(StandardCharsets.UTF_8)) {
+      int size = length;
+      for (int i = offset;i < offset + length;i++) {
+        int codePoint = codePoints[i];
+        if (codePoint >= 0x80) {
+          size += codePoint < 0x800 ? 1 : codePoint < 0x10000 ? 2 : 3;
+        }
+      }
+      return size;
+    } else if (charset.equals(StandardCharsets.US_ASCII)) {
+      return length;
+    } else {
+      int chars = 0;
+      for (int i = offset;i < offset + length;i++) {
+        chars += Character.charCount(codePoints[i]);
+      }
+      return (int) Math.ceil(encoder(charset).maxBytesPerChar() * chars);
     }
-    CharBuffer charBuf = CharBuffer.allocate(capacity);
-    for (int codePoint : codePoints) {
-      int size = Character.toChars(codePoint, tmp, 0);
-      charBuf.put(tmp, 0, size);
+  }
+
+  /**
+   * Encode a range of code points into a {@link ByteBuf}, the buffer is expanded when needed.
+   *
+   * @param codePoints the code points
+   * @param offset the range offset
+   * @param length the range length
+   * @param dst the destination buffer
+   */
+  public void encode(int[] codePoints, int offset, int length, ByteBuf dst) {
+    int max = maxEncodedLength(codePoints, offset, length);
+    dst.ensureWritable(max);
+    int index = dst.writerIndex();
+    ByteBuffer nioBuf = dst.nioBufferCount() == 1 ? dst.internalNioBuffer(index, max) : dst.nioBuffer(index, max);
+    int pos = nioBuf.position();
+    encode(codePoints, offset, length, nioBuf);
+    dst.writerIndex(index + nioBuf.position() - pos);
+  }
+
+  /**
+   * Encode a range of code points into a {@link ByteBuffer}, the buffer must have at least
+   * {@link #maxEncodedLength(int[], int, int)} remaining bytes.
+   *
+   * @param codePoints the code points
+   * @param offset the range offset
+   * @param length the range length
+   * @param dst the destination buffer
+   * @throws BufferOverflowException when the buffer is too small
+   */
+  public void encode(int[] codePoints, int offset, int length, ByteBuffer dst) {
+    Charset charset = this.charset;
+    if (charset.equals(StandardCharsets.UTF_8)) {
+      encodeUtf8(codePoints, offset, length, dst);
+    } else if (charset.equals(StandardCharsets.US_ASCII)) {
+      for (int i = offset;i < offset + length;i++) {
+        int codePoint = codePoints[i];
+        dst.put(codePoint < 0x80 ? (byte) codePoint : (byte) '?');
+      }
+    } else {
+      CharsetEncoder encoder = encoder(charset);
+      int chars = 0;
+      for (int i = offset;i < offset + length;i++) {
+        chars += Character.charCount(codePoints[i]);
+      }
+      if (chars > cBuf.capacity()) {
+        cBuf = CharBuffer.allocate(Math.max(chars, cBuf.capacity() * 2));
+      }
+      cBuf.clear();
+      char[] array = cBuf.array();
+      int pos = 0;
+      for (int i = offset;i < offset + length;i++) {
+        pos += Character.toChars(codePoints[i], array, pos);
+      }
+      cBuf.limit(pos);
+      encoder.reset();
+      CoderResult result = encoder.encode(cBuf, dst, true);
+      if (result.isUnderflow()) {
+        result = encoder.flush(dst);
+      }
+      if (result.isOverflow()) {
+        throw new BufferOverflowException();
+      }
+    }
+  }
+
+  private static void encodeUtf8(int[] codePoints, int offset, int length, ByteBuffer dst) {
+    for (int i = offset;i < offset + length;i++) {
+      int codePoint = codePoints[i];
+      if (codePoint >= 0 && codePoint < 0x80) {
+        dst.put((byte) codePoint);
+      } else if (codePoint >= 0x80 && codePoint < 0x800) {
+        dst.put((byte) (0xC0 | (codePoint >> 6)));
+        dst.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (codePoint >= 0x800 && codePoint < 0x10000 && !Character.isSurrogate((char) codePoint)) {
+        dst.put((byte) (0xE0 | (codePoint >> 12)));
+        dst.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        dst.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else if (codePoint >= 0x10000 && codePoint <= Character.MAX_CODE_POINT) {
+        dst.put((byte) (0xF0 | (codePoint >> 18)));
+        dst.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+        dst.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+        dst.put((byte) (0x80 | (codePoint & 0x3F)));
+      } else {
+        // Same replacement than the JDK encoder
+        dst.put((byte) '?');
+      }
     }
-    charBuf.flip();
-    ByteBuffer bytesBuf = charset.encode(charBuf);
-    byte[] bytes = bytesBuf.array();
-    if (bytesBuf.limit() < bytesBuf.array().length) {
-      bytes = Arrays.copyOf(bytes, bytesBuf.limit());
+  }
+
+  private CharsetEncoder encoder(Charset charset) {
+    if (encoder == null || !encoder.charset().equals(charset)) {
+      encoder = charset.newEncoder();
+      encoder.onMalformedInput(CodingErrorAction.REPLACE);
+      encoder.onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
-    onByte.accept(bytes);
+    return encoder;
   }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.io;
+
+import java.util.function.Consumer;
+
+/**
+ * A primitive code point consumer receiving a slice of an array.<p>
+ *
+ * The array is owned by the caller and is only valid for the duration of the call, it is usually reused
+ * for the next call, so an implementation must copy the code points it wants to retain.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+@FunctionalInterface
+public interface CodePointSink extends Consumer<int[]> {
+
+  /**
+   * Adapt a consumer to a sink, the consumer receives a copy of each slice.
+   *
+   * @param consumer the consumer to adapt
+   * @return the sink
+   */
+  static CodePointSink of(Consumer<int[]> consumer) {
+    if (consumer instanceof CodePointSink) {
+      return (CodePointSink) consumer;
+    }
+    return (buf, off, len) -> {
+      int[] codePoints = new int[len];
+      System.arraycopy(buf, off, codePoints, 0, len);
+      consumer.accept(codePoints);
+    };
+  }
+
+  /**
+   * Consume the code points in the range {@literal [off,off + len[} of the array.
+   *
+   * @param buf the array
+   * @param off the offset of the first code point
+   * @param len the number of code points
+   */
+  void accept(int[] buf, int off, int len);
+
+  @Override
+  default void accept(int[] codePoints) {
+    accept(codePoints, 0, codePoints.length);
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.io;
+
+/**
+ * A UTF-8 to code point state machine that decodes bytes straight into an int buffer.<p>
+ *
+ * A sequence split across writes is resumed by the next write. Malformed input is replaced by
+ * {@code U+FFFD} for each maximal subpart of an ill-formed sequence, as recommended by the Unicode standard.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class Utf8Decoder {
+
+  static final int REPLACEMENT = 0xFFFD;
+
+  private final int[] buf;
+  private final CodePointSink sink;
+  private int count;
+  private int codePoint; // The code point being decoded
+  private int needed;    // The number of continuation bytes needed
+  private int lower = 0x80;
+  private int upper = 0xBF;
+
+  Utf8Decoder(int[] buf, CodePointSink sink) {
+    this.buf = buf;
+    this.sink = sink;
+  }
+
+  void write(byte[] data, int start, int len) {
+    int end = start + len;
+    int i = start;
+    while (i < end) {
+      if (needed == 0) {
+        // ASCII fast path
+        int max = Math.min(end, i + buf.length - count);
+        while (i < max && data[i] >= 0) {
+          buf[count++] = data[i++];
+        }
+        if (count == buf.length) {
+          flush();
+        }
+        if (i == end || data[i] >= 0) {
+          continue;
+        }
+      }
+      int b = data[i] & 0xFF;
+      if (needed == 0) {
+        if (b >= 0xC2 && b <= 0xDF) {
+          needed = 1;
+          codePoint = b & 0x1F;
+        } else if (b >= 0xE0 && b <= 0xEF) {
+          if (b == 0xE0) {
+            lower = 0xA0; // Overlong
+          } else if (b == 0xED) {
+            upper = 0x9F; // Surrogates
+          }
+          needed = 2;
+          codePoint = b & 0x0F;
+        } else if (b >= 0xF0 && b <= 0xF4) {
+          if (b == 0xF0) {
+            lower = 0x90; // Overlong
+          } else if (b == 0xF4) {
+            upper = 0x8F; // Greater than U+10FFFF
+          }
+          needed = 3;
+          codePoint = b & 0x07;
+        } else {
+          emit(REPLACEMENT);
+        }
+        i++;
+      } else {
+        if (b < lower || b > upper) {
+          // Replace the ill-formed subpart and process this byte again
+          needed = 0;
+          codePoint = 0;
+          lower = 0x80;
+          upper = 0xBF;
+          emit(REPLACEMENT);
+        } else {
+          lower = 0x80;
+          upper = 0xBF;
+          codePoint = (codePoint << 6) | (b & 0x3F);
+          if (--needed == 0) {
+            emit(codePoint);
+            codePoint = 0;
+          }
+          i++;
+        }
+      }
+    }
+    flush();
+  }
+
+  /**
+   * Drop an incomplete sequence.
+   */
+  void reset() {
+    needed = 0;
+    codePoint = 0;
+    lower = 0x80;
+    upper = 0xBF;
+  }
+
+  private void emit(int cp) {
+    if (count == buf.length) {
+      flush();
+    }
+    buf[count++] = cp;
+  }
+
+  private void flush() {
+    if (count > 0) {
+      int len = count;
+      count = 0;
+      sink.accept(buf, 0, len);
+    }
+  }
+}
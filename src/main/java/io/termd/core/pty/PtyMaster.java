@@ -47,7 +47,9 @@ public class PtyMaster extends Thread {
   private final Consumer<int[]> stdout;
   private Status status;
   private Process process;
-  private boolean interrupted;
+  private volatile boolean interrupted;
+  private final Object pauseLock = new Object();
+  private boolean paused; // Guarded by pauseLock
 
   public PtyMaster(String line, Consumer<int[]> stdout, Consumer<Void> doneHandler) {
     this.line = line;
@@ -89,6 +91,12 @@ public class PtyMaster extends Thread {
     public void run() {
       byte[] buffer = new byte[512];
       while (true) {
+        try {
+          awaitResumed();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
         try {
           int l = in.read(buffer);
           if (l == -1) {
@@ -115,6 +123,35 @@ public class PtyMaster extends Thread {
     if (!interrupted) {
       interrupted = true;
       process.destroy();
+      resumeOutput();
+    }
+  }
+
+  /**
+   * Pause reading the process output, the process blocks when its output pipe is full. This is used
+   * to stop producing output while the client is not writable.
+   */
+  public void pauseOutput() {
+    synchronized (pauseLock) {
+      paused = true;
+    }
+  }
+
+  /**
+   * Resume reading the process output.
+   */
+  public void resumeOutput() {
+    synchronized (pauseLock) {
+      paused = false;
+      pauseLock.notifyAll();
+    }
+  }
+
+  private void awaitResumed() throws InterruptedException {
+    synchronized (pauseLock) {
+      while (paused && !interrupted) {
+        pauseLock.wait();
+      }
     }
   }
 
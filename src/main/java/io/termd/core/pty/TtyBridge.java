@@ -105,6 +105,20 @@ public class TtyBridge {
         task.interruptProcess();
       }
     });
+    conn.setWritabilityHandler(writable -> {
+      if (writable) {
+        task.resumeOutput();
+      } else {
+        task.pauseOutput();
+      }
+    });
+    if (!conn.isWritable()) {
+      task.pauseOutput();
+      if (conn.isWritable()) {
+        // Became writable before pausing
+        task.resumeOutput();
+      }
+    }
     if (processListener != null) {
       processListener.accept(task);
     }
@@ -113,13 +127,12 @@ public class TtyBridge {
 
   private void doneHandler(TtyConnection conn, Readline readline) {
     conn.setEventHandler(null);
+    conn.setWritabilityHandler(null);
     conn.execute(() -> read(conn, readline));
   }
 
   private void onStdOut(TtyConnection conn, int[] buffer) {
-    conn.execute(() -> {
-      conn.stdoutHandler().accept(buffer);
-    });
+    conn.stdoutHandler().accept(buffer);
     if (processStdoutListener != null) {
       processStdoutListener.accept(buffer);
     }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.term.Capability;
+import io.termd.core.term.Device;
+import io.termd.core.term.Sequence;
+import io.termd.core.util.Helper;
+
+/**
+ * The cursor motion sequences of a device, used to plan the cheapest cursor moves. The ANSI sequences are
+ * used for the capabilities the device does not provide, the parameterized sequences are evaluated once and cached.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class CursorMotion {
+
+  private static final int[] CR = {'\r'};
+  private static final int[] BS = {'\b'};
+  private static final int[] CUU1 = {'\033', '[', 'A'};
+
+  /**
+   * The ANSI motions.
+   */
+  static final CursorMotion ANSI = new CursorMotion(null);
+
+  final int[] carriageReturn;
+  private final int[] cursorLeft;
+  private final int[] cursorUp;
+  private final Parameterized parmLeft;
+  private final Parameterized parmRight;
+  private final Parameterized parmUp;
+  private final Parameterized parmDown;
+  private final Parameterized columnAddress;
+
+  CursorMotion(Device device) {
+    carriageReturn = sequence(device, Capability.carriage_return, CR);
+    cursorLeft = sequence(device, Capability.cursor_left, BS);
+    cursorUp = sequence(device, Capability.cursor_up, CUU1);
+    // cursor_down is not used, it is usually a line feed that the output mode translates to CRLF
+    parmLeft = new Parameterized(device, Capability.parm_left_cursor, 'D', 0);
+    parmRight = new Parameterized(device, Capability.parm_right_cursor, 'C', 0);
+    parmUp = new Parameterized(device, Capability.parm_up_cursor, 'A', 0);
+    parmDown = new Parameterized(device, Capability.parm_down_cursor, 'B', 0);
+    columnAddress = new Parameterized(device, Capability.column_address, 'G', 1);
+  }
+
+  /**
+   * @return the cheapest sequence moving the cursor {@code n > 0} columns to the left, either a single move
+   * sequence repeated {@code n} times or a parameterized sequence
+   */
+  int[] left(int n) {
+    return cheapest(cursorLeft, n, parmLeft.eval(n));
+  }
+
+  /**
+   * @return the sequence moving the cursor {@code n > 0} columns to the right
+   */
+  int[] right(int n) {
+    return parmRight.eval(n);
+  }
+
+  /**
+   * @return the cheapest sequence moving the cursor {@code n > 0} rows up
+   */
+  int[] up(int n) {
+    return cheapest(cursorUp, n, parmUp.eval(n));
+  }
+
+  /**
+   * @return the sequence moving the cursor {@code n > 0} rows down
+   */
+  int[] down(int n) {
+    return parmDown.eval(n);
+  }
+
+  /**
+   * @return the sequence moving the cursor to the {@code col} column
+   */
+  int[] column(int col) {
+    return columnAddress.eval(col);
+  }
+
+  private static int[] cheapest(int[] single, int n, int[] parameterized) {
+    if (single.length * n <= parameterized.length) {
+      if (n == 1) {
+        return single;
+      }
+      int[] seq = new int[single.length * n];
+      for (int i = 0;i < n;i++) {
+        System.arraycopy(single, 0, seq, i * single.length, single.length);
+      }
+      return seq;
+    }
+    return parameterized;
+  }
+
+  private static int[] sequence(Device device, Capability<Sequence> capability, int[] def) {
+    Sequence seq = device != null ? device.getFeature(capability) : null;
+    return seq != null ? Helper.toCodePoints(seq.eval()) : def;
+  }
+
+  /**
+   * A sequence with a numeric parameter.
+   */
+  private static class Parameterized {
+
+    private static final int CACHE_SIZE = 256;
+
+    private final Sequence seq;
+    private final int ansiFinal;
+    private final int ansiOffset;
+    private final int[][] cache = new int[CACHE_SIZE][];
+
+    Parameterized(Device device, Capability<Sequence> capability, int ansiFinal, int ansiOffset) {
+      this.seq = device != null ? device.getFeature(capability) : null;
+      this.ansiFinal = ansiFinal;
+      this.ansiOffset = ansiOffset;
+    }
+
+    int[] eval(int n) {
+      int[] codePoints = n < CACHE_SIZE ? cache[n] : null;
+      if (codePoints == null) {
+        if (seq != null) {
+          // Two parameters as %i increments the first two parameters
+          codePoints = Helper.toCodePoints(seq.eval(Integer.toString(n), "0"));
+        } else {
+          codePoints = Helper.toCodePoints("\033[" + (n + ansiOffset) + (char) ansiFinal);
+        }
+        if (n < CACHE_SIZE) {
+          cache[n] = codePoints;
+        }
+      }
+      return codePoints;
+    }
+  }
+}
@@ -17,26 +17,67 @@
 package io.termd.core.readline;
 
 import java.nio.IntBuffer;
-import java.util.Arrays;
+import java.util.ArrayDeque;
 import java.util.Iterator;
-import java.util.LinkedList;
 
 /**
+ * Match key events from code points. The pending code points are kept in a growable ring buffer so appending
+ * and consuming events do not copy the pending code points.<p>
+ *
+ * Text bracketed by the {@code ESC[200~} and {@code ESC[201~} markers of the xterm bracketed paste mode is
+ * delivered as a single {@link PasteEvent} without consulting the keymap. When the end marker is not received
+ * within the maximum paste length, the pending code points are matched as keys instead.
+ *
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
 public class EventQueue implements Iterator<KeyEvent> {
 
-  private KeyEvent[] bindings;
-  private final LinkedList<KeyEvent> events = new LinkedList<>();
-  private int[] pending = new int[0];
+  private static final int INITIAL_CAPACITY = 16;
+  private static final int MAX_RETAINED_CAPACITY = 4096;
+
+  /**
+   * The default maximum number of code points of a pasted block.
+   */
+  public static final int DEFAULT_MAX_PASTE_LENGTH = 1024 * 1024;
+
+  private final KeyTrie trie;
+  private final ArrayDeque<KeyEvent> events = new ArrayDeque<>();
+  private int[] ring = new int[INITIAL_CAPACITY]; // The length is a power of two
+  private int head;                                // The index of the first pending code point
+  private int size;                                // The number of pending code points
+  private KeyEvent match; // The match of the pending code points cached between peek and next
+  private int pasteScan;  // The index from which the paste end marker is searched
+  private boolean pasteAborted; // The pending paste start marker is matched as keys
+  private final int maxPasteLength;
 
   public EventQueue(Keymap keymap) {
-    this.bindings = keymap.bindings.toArray(new KeyEvent[keymap.bindings.size()]);
+    this(keymap, DEFAULT_MAX_PASTE_LENGTH);
+  }
+
+  /**
+   * @param keymap the keymap
+   * @param maxPasteLength the maximum number of code points of a pasted block
+   */
+  public EventQueue(Keymap keymap, int maxPasteLength) {
+    this.trie = keymap.trie();
+    this.maxPasteLength = maxPasteLength;
   }
 
   public EventQueue append(int... codePoints) {
-    pending = Arrays.copyOf(pending, pending.length + codePoints.length);
-    System.arraycopy(codePoints, 0 , pending, pending.length - codePoints.length, codePoints.length);
+    if (size + codePoints.length > ring.length) {
+      int capacity = ring.length;
+      while (capacity < size + codePoints.length) {
+        capacity <<= 1;
+      }
+      ring = copy(capacity);
+      head = 0;
+    }
+    int tail = (head + size) & (ring.length - 1);
+    int n = Math.min(codePoints.length, ring.length - tail);
+    System.arraycopy(codePoints, 0, ring, tail, n);
+    System.arraycopy(codePoints, n, ring, 0, codePoints.length - n);
+    size += codePoints.length;
+    match = null;
     return this;
   }
 
@@ -47,7 +88,7 @@ public class EventQueue implements Iterator<KeyEvent> {
 
   public KeyEvent peek() {
     if (events.isEmpty()) {
-      return match(pending);
+      return match();
     } else {
       return events.peekFirst();
     }
@@ -59,10 +100,18 @@ public class EventQueue implements Iterator<KeyEvent> {
 
   public KeyEvent next() {
     if (events.isEmpty()) {
-      KeyEvent next = match(pending);
+      KeyEvent next = match();
       if (next != null) {
         events.add(next);
-        pending = Arrays.copyOfRange(pending, next.length(), pending.length);
+        head = (head + next.length()) & (ring.length - 1);
+        size -= next.length();
+        match = null;
+        pasteScan = 0;
+        pasteAborted = false;
+        if (size == 0 && ring.length > MAX_RETAINED_CAPACITY) {
+          ring = new int[INITIAL_CAPACITY];
+          head = 0;
+        }
       }
     }
     return events.removeFirst();
@@ -70,8 +119,15 @@ public class EventQueue implements Iterator<KeyEvent> {
 
   public int[] clear() {
     events.clear();
-    int[] buffer = pending;
-    pending = new int[0];
+    int[] buffer = copy(size);
+    if (ring.length > MAX_RETAINED_CAPACITY) {
+      ring = new int[INITIAL_CAPACITY];
+    }
+    head = 0;
+    size = 0;
+    match = null;
+    pasteScan = 0;
+    pasteAborted = false;
     return buffer;
   }
 
@@ -79,61 +135,72 @@ public class EventQueue implements Iterator<KeyEvent> {
    * @return the buffer chars as a read-only int buffer
    */
   public IntBuffer getBuffer() {
-    return IntBuffer.wrap(pending).asReadOnlyBuffer();
+    return IntBuffer.wrap(copy(size)).asReadOnlyBuffer();
   }
 
-  private KeyEvent match(int[] buffer) {
-    if (buffer.length > 0) {
-      KeyEvent candidate = null;
-      int prefixes = 0;
-      next:
-      for (KeyEvent action : bindings) {
-        if (action.length() > 0) {
-          if (action.length() <= buffer.length) {
-            for (int i = 0;i < action.length();i++) {
-              if (action.getCodePointAt(i) != buffer[i]) {
-                continue next;
-              }
-            }
-            if (candidate != null && candidate.length() > action.length()) {
-              continue next;
-            }
-            candidate = action;
-          } else {
-            for (int i = 0;i < buffer.length;i++) {
-              if (action.getCodePointAt(i) != buffer[i]) {
-                continue next;
-              }
-            }
-            prefixes++;
-          }
+  private KeyEvent match() {
+    if (match == null) {
+      if (!pasteAborted && prefixLength(0, PasteEvent.START) == PasteEvent.START.length) {
+        match = matchPaste();
+        if (match == null && size - PasteEvent.START.length > maxPasteLength + PasteEvent.END.length) {
+          // The end marker is missing, the pending code points are keys
+          pasteAborted = true;
         }
       }
-      if (candidate == null) {
-        if (prefixes == 0) {
-          final int c = buffer[0];
-          return new KeyEvent() {
-            @Override
-            public int getCodePointAt(int index) throws IndexOutOfBoundsException {
-              if (index != 0) {
-                throw new IndexOutOfBoundsException("Wrong index " + index);
-              }
-              return c;
-            }
-            @Override
-            public int length() {
-              return 1;
-            }
-            @Override
-            public String toString() {
-              return "key:" + c;
-            }
-          };
-        }
-      } else {
-        return candidate;
+      if (match == null && (pasteAborted || prefixLength(0, PasteEvent.START) < PasteEvent.START.length)) {
+        match = trie.match(ring, head, size, ring.length - 1);
+      }
+    }
+    return match;
+  }
+
+  private KeyEvent matchPaste() {
+    int start = PasteEvent.START.length;
+    int end = PasteEvent.END.length;
+    int mask = ring.length - 1;
+    for (int i = Math.max(start, pasteScan);i + end <= size;i++) {
+      if (ring[(head + i) & mask] == 27 && prefixLength(i, PasteEvent.END) == end) {
+        return new PasteEvent(copy(start, i - start));
       }
     }
+    // Do not scan again the code points that cannot start the end marker
+    pasteScan = Math.max(start, size - end + 1);
     return null;
   }
+
+  /**
+   * @return the length of the longest common prefix of the pending code points starting at {@code from} and the sequence
+   */
+  private int prefixLength(int from, int[] seq) {
+    int max = Math.min(size - from, seq.length);
+    int mask = ring.length - 1;
+    int n = 0;
+    while (n < max && ring[(head + from + n) & mask] == seq[n]) {
+      n++;
+    }
+    return n;
+  }
+
+  /**
+   * Copy the pending code points to the start of a new array.
+   */
+  private int[] copy(int capacity) {
+    int[] copy = new int[capacity];
+    int n = Math.min(size, ring.length - head);
+    System.arraycopy(ring, head, copy, 0, n);
+    System.arraycopy(ring, 0, copy, n, size - n);
+    return copy;
+  }
+
+  /**
+   * Copy a range of the pending code points to a new array.
+   */
+  private int[] copy(int from, int length) {
+    int[] copy = new int[length];
+    int pos = (head + from) & (ring.length - 1);
+    int n = Math.min(length, ring.length - pos);
+    System.arraycopy(ring, pos, copy, 0, n);
+    System.arraycopy(ring, 0, copy, n, length - n);
+    return copy;
+  }
 }
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An history persisted in an append-only file, the index {@code 0} is the most recent line.<p>
+ *
+ * Each line is appended as a record made of the line encoded in UTF-8 followed by its length and its sequence
+ * number in the file. The file is memory-mapped and read backward from its end: opening the history reads only the
+ * last record and the lines are paged in when they are accessed, the offsets of the visited records are kept.<p>
+ *
+ * Appending a line is a single write under a file lock, so several processes can share the same file. The sessions
+ * of a process share the same instance, the appends of the other processes become visible when a line is added
+ * or when the history is {@link #reload() reloaded}. Only the most recent line can be added. The file locks are
+ * held by the process, the instances opened on the same file in a process serialize their writes among them.<p>
+ *
+ * The history cannot be cleared: the file may be mapped by other processes that would fail reading a truncated
+ * region. The file can be deleted when no process uses it.<p>
+ *
+ * Adding a line writes the file and may wait for the lock held by another process, {@link Readline} adds the
+ * accepted lines from the connection executor. A write failure is thrown as an {@link UncheckedIOException},
+ * {@link Readline} logs it and delivers the line anyway.<p>
+ *
+ * A record left incomplete at the end of the file by a crashed writer is truncated when the file is loaded.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class FileHistory extends History implements Closeable {
+
+  private static final int TRAILER_LENGTH = 8; // The line length and the sequence number
+  private static final Map<Path, Share> SHARES = new HashMap<>();
+
+  /**
+   * The instances opened on the same file.
+   */
+  private static class Share {
+    private int refs;
+  }
+
+  private final FileChannel channel;
+  private final Path path;
+  private final Share share;
+  private MappedByteBuffer map;
+  private long length; // The file length visible
+  private int count;   // The number of records visible
+  private int[] ends = new int[16]; // The end offset of the records from the sequence number base
+  private int base;
+  private int known;   // The lowest sequence number whose end offset is known
+
+  /**
+   * Open an history file, the file is created when it does not exist.
+   *
+   * @param file the file
+   */
+  public FileHistory(Path file) throws IOException {
+    super(Integer.MAX_VALUE, false);
+    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      path = file.toRealPath();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+    synchronized (SHARES) {
+      share = SHARES.computeIfAbsent(path, p -> new Share());
+      share.refs++;
+    }
+    try {
+      refresh();
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  @Override
+  public synchronized int size() {
+    return count;
+  }
+
+  @Override
+  public synchronized int[] get(int index) {
+    int end = end(seq(index)) - TRAILER_LENGTH;
+    ByteBuffer buffer = buffer(end + TRAILER_LENGTH);
+    int start = start(buffer, end);
+    byte[] data = new byte[end - start];
+    for (int i = 0;i < data.length;i++) {
+      data[i] = buffer.get(start + i);
+    }
+    return decode(data);
+  }
+
+  /**
+   * Append the most recent line to the file.
+   *
+   * @param index the index, must be {@code 0}
+   * @param line the line code points
+   * @throws UncheckedIOException when the file cannot be written
+   */
+  @Override
+  public synchronized void add(int index, int[] line) {
+    if (index != 0) {
+      throw new UnsupportedOperationException("Only the most recent line can be added");
+    }
+    byte[] data = encode(line);
+    ByteBuffer record = ByteBuffer.allocate(data.length + TRAILER_LENGTH);
+    synchronized (share) {
+      try (FileLock lock = channel.lock()) {
+        long position = repair(channel.size());
+        int seq = position == 0 ? 0 : readInt(position - 4) + 1;
+        record.put(data).putInt(data.length).putInt(seq).flip();
+        while (record.hasRemaining()) {
+          channel.write(record, position + record.position());
+        }
+        load(position + record.limit());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    modCount++;
+  }
+
+  @Override
+  public int[] set(int index, int[] line) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public int[] remove(int index) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Not supported, the file may be mapped by other processes.
+   */
+  @Override
+  public void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Make visible the lines appended to the file by other processes.
+   */
+  public synchronized void reload() throws IOException {
+    refresh();
+  }
+
+  @Override
+  public synchronized int search(int[] text, int from) {
+    return search(encode(text), from, false);
+  }
+
+  @Override
+  public synchronized int searchPrefix(int[] prefix, int from) {
+    return search(encode(prefix), from, true);
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel.isOpen()) {
+      synchronized (SHARES) {
+        if (--share.refs == 0) {
+          SHARES.remove(path);
+        }
+      }
+    }
+    map = null;
+    channel.close();
+  }
+
+  private int search(byte[] pattern, int from, boolean prefix) {
+    for (int index = Math.max(from, 0);index < count;index++) {
+      int end = end(count - 1 - index) - TRAILER_LENGTH;
+      ByteBuffer buffer = buffer(end + TRAILER_LENGTH);
+      int start = start(buffer, end);
+      int last = prefix ? start : end - pattern.length;
+      for (int offset = start;offset <= last;offset++) {
+        if (regionMatches(buffer, offset, end, pattern)) {
+          return index;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private static boolean regionMatches(ByteBuffer buffer, int offset, int end, byte[] pattern) {
+    if (offset + pattern.length > end) {
+      return false;
+    }
+    for (int i = 0;i < pattern.length;i++) {
+      if (buffer.get(offset + i) != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Update the view of the file to its current length, an incomplete last record is truncated.
+   */
+  private void refresh() throws IOException {
+    long size = channel.size();
+    if (size != length && !complete(size)) {
+      synchronized (share) {
+        try (FileLock lock = channel.lock()) {
+          size = repair(channel.size());
+        }
+      }
+    }
+    load(size);
+  }
+
+  /**
+   * Truncate the file to its last complete record, the file lock must be held.
+   *
+   * @return the file length
+   */
+  private long repair(long size) throws IOException {
+    long end = size;
+    while (end > 0 && !complete(end)) {
+      end--;
+    }
+    if (end < size) {
+      channel.truncate(end);
+    }
+    return end;
+  }
+
+  /**
+   * @return whether a complete record ends at a position, its length and its sequence number are checked against
+   *         the previous record
+   */
+  private boolean complete(long end) throws IOException {
+    if (end == 0) {
+      return true;
+    }
+    if (end < TRAILER_LENGTH) {
+      return false;
+    }
+    int lineLength = readInt(end - TRAILER_LENGTH);
+    int seq = readInt(end - 4);
+    long start = end - TRAILER_LENGTH - lineLength;
+    if (lineLength < 0 || seq < 0 || start < 0) {
+      return false;
+    }
+    if (start == 0) {
+      return seq == 0;
+    }
+    return seq > 0 && start >= TRAILER_LENGTH && readInt(start - 4) == seq - 1;
+  }
+
+  /**
+   * Update the view of the file to a length.
+   */
+  private void load(long size) throws IOException {
+    if (size == length && size > 0) {
+      return;
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("History file too large");
+    }
+    int nextCount = size == 0 ? 0 : readInt(size - 4) + 1;
+    if (count == 0 || nextCount != count + 1 || size < length) {
+      // Forget the offsets and the mapping unless a single record was appended
+      known = nextCount - 1;
+      base = Math.max(known, 0);
+      map = null;
+    }
+    if (nextCount > 0) {
+      ensureIndex(nextCount - 1);
+      ends[nextCount - 1 - base] = (int) size;
+    }
+    count = nextCount;
+    length = size;
+  }
+
+  private int seq(int index) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("Wrong index: " + index);
+    }
+    return count - 1 - index;
+  }
+
+  /**
+   * @return the end offset of a record, the records are visited backward from the last record known
+   */
+  private int end(int seq) {
+    if (seq < known) {
+      ensureIndex(seq);
+      ByteBuffer buffer = buffer(ends[known - base]);
+      while (known > seq) {
+        int start = start(buffer, ends[known - base] - TRAILER_LENGTH);
+        if (start < TRAILER_LENGTH) {
+          throw new UncheckedIOException(new IOException("Corrupted history file"));
+        }
+        known--;
+        ends[known - base] = start;
+      }
+    }
+    return ends[seq - base];
+  }
+
+  /**
+   * Grow the offsets array so it contains a sequence number, the array grows downward when the records are
+   * visited backward.
+   */
+  private void ensureIndex(int seq) {
+    if (seq < base) {
+      int top = base + ends.length;
+      int nextBase = Math.max(0, Math.min(seq, top - ends.length * 2));
+      int[] next = new int[top - nextBase];
+      System.arraycopy(ends, 0, next, base - nextBase, ends.length);
+      ends = next;
+      base = nextBase;
+    } else if (seq >= base + ends.length) {
+      ends = Arrays.copyOf(ends, Math.max(seq - base + 1, ends.length * 2));
+    }
+  }
+
+  /**
+   * @return the start offset of a record from the offset of its trailer
+   */
+  private static int start(ByteBuffer buffer, int end) {
+    int length = buffer.getInt(end);
+    if (length < 0 || length > end) {
+      throw new UncheckedIOException(new IOException("Corrupted history file"));
+    }
+    return end - length;
+  }
+
+  /**
+   * @return the file mapping, it is extended to the visible length when it does not contain an offset
+   */
+  private ByteBuffer buffer(int end) {
+    if (map == null || map.limit() < end) {
+      try {
+        map = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return map;
+  }
+
+  private int readInt(long position) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4);
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("Corrupted history file");
+      }
+    }
+    return buffer.getInt(0);
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The readline history, a bounded list of lines where the index {@code 0} is the most recent line.<p>
+ *
+ * The lines are kept encoded in UTF-8 in a ring buffer, so adding the most recent line is done in constant time
+ * and drops the oldest line when the history is full. When deduplication is enabled, adding the most recent line
+ * removes its previous occurrence.<p>
+ *
+ * Each line is indexed by a signature of its bytes and of its pairs of bytes, a search only compares the lines
+ * whose signature contains the signature of the searched text.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class History extends AbstractList<int[]> {
+
+  /**
+   * The default capacity.
+   */
+  public static final int DEFAULT_CAPACITY = 1000;
+
+  private static final int INITIAL_LENGTH = 16;
+
+  private final int capacity;
+  private final boolean dedup;
+  private byte[][] lines;
+  private long[] signatures; // The bytes signature of each line
+  private long[] pairSignatures; // The pairs of bytes signature of each line
+  private int head; // The ring index of the most recent line
+  private int size;
+
+  public History() {
+    this(DEFAULT_CAPACITY, false);
+  }
+
+  /**
+   * Create an history.
+   *
+   * @param capacity the maximum number of lines
+   * @param dedup true to remove the previous occurrence of a line added as the most recent line
+   */
+  public History(int capacity, boolean dedup) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Invalid capacity " + capacity);
+    }
+    this.capacity = capacity;
+    this.dedup = dedup;
+    int length = Math.min(capacity, INITIAL_LENGTH);
+    lines = new byte[length][];
+    signatures = new long[length];
+    pairSignatures = new long[length];
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public boolean isDedup() {
+    return dedup;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public int[] get(int index) {
+    checkIndex(index, size);
+    return decode(lines[ring(index)]);
+  }
+
+  @Override
+  public int[] set(int index, int[] line) {
+    checkIndex(index, size);
+    int i = ring(index);
+    int[] prev = decode(lines[i]);
+    store(i, encode(line));
+    return prev;
+  }
+
+  /**
+   * Add a line, the index {@code 0} adds the most recent line and the index {@link #size()} adds the oldest line.
+   * When the history is full adding the most recent line drops the oldest line and adding the oldest line is ignored.
+   *
+   * @param index the index
+   * @param line the line code points
+   */
+  @Override
+  public void add(int index, int[] line) {
+    checkIndex(index, size + 1);
+    byte[] data = encode(line);
+    if (dedup) {
+      int prev = indexOf(data);
+      if (prev != -1) {
+        if (index == 0) {
+          remove(prev);
+        } else {
+          return;
+        }
+      }
+    }
+    if (size == capacity) {
+      if (index == size) {
+        return;
+      }
+      size--;
+    }
+    if (size == lines.length) {
+      grow();
+    }
+    if (index == 0) {
+      head = head == 0 ? lines.length - 1 : head - 1;
+    } else {
+      for (int i = size;i > index;i--) {
+        move(ring(i - 1), ring(i));
+      }
+    }
+    store(ring(index), data);
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public int[] remove(int index) {
+    checkIndex(index, size);
+    int[] line = decode(lines[ring(index)]);
+    for (int i = index;i < size - 1;i++) {
+      move(ring(i + 1), ring(i));
+    }
+    lines[ring(--size)] = null;
+    modCount++;
+    return line;
+  }
+
+  @Override
+  public void clear() {
+    Arrays.fill(lines, null);
+    head = 0;
+    size = 0;
+    modCount++;
+  }
+
+  /**
+   * Search the most recent line containing a text, starting at an index towards the oldest lines.
+   *
+   * @param text the text code points
+   * @param from the index of the first line to search
+   * @return the index of the line or {@code -1}
+   */
+  public int search(int[] text, int from) {
+    return search(text, from, false);
+  }
+
+  /**
+   * Search the most recent line starting with a prefix, starting at an index towards the oldest lines.
+   *
+   * @param prefix the prefix code points
+   * @param from the index of the first line to search
+   * @return the index of the line or {@code -1}
+   */
+  public int searchPrefix(int[] prefix, int from) {
+    return search(prefix, from, true);
+  }
+
+  private int search(int[] text, int from, boolean prefix) {
+    byte[] pattern = encode(text);
+    long signature = signature(pattern);
+    long pairSignature = pairSignature(pattern);
+    for (int index = Math.max(from, 0);index < size;index++) {
+      int i = ring(index);
+      if ((signatures[i] & signature) == signature && (pairSignatures[i] & pairSignature) == pairSignature) {
+        byte[] line = lines[i];
+        if (prefix ? regionMatches(line, 0, pattern) : contains(line, pattern)) {
+          return index;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private int indexOf(byte[] data) {
+    long signature = signature(data);
+    for (int index = 0;index < size;index++) {
+      int i = ring(index);
+      if (signatures[i] == signature && Arrays.equals(lines[i], data)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private int ring(int index) {
+    int i = head + index;
+    return i < lines.length ? i : i - lines.length;
+  }
+
+  private void store(int i, byte[] data) {
+    lines[i] = data;
+    signatures[i] = signature(data);
+    pairSignatures[i] = pairSignature(data);
+  }
+
+  private void move(int from, int to) {
+    lines[to] = lines[from];
+    signatures[to] = signatures[from];
+    pairSignatures[to] = pairSignatures[from];
+  }
+
+  private void grow() {
+    int length = (int) Math.min(capacity, lines.length * 2L);
+    byte[][] nextLines = new byte[length][];
+    long[] nextSignatures = new long[length];
+    long[] nextPairSignatures = new long[length];
+    for (int index = 0;index < size;index++) {
+      int i = ring(index);
+      nextLines[index] = lines[i];
+      nextSignatures[index] = signatures[i];
+      nextPairSignatures[index] = pairSignatures[i];
+    }
+    lines = nextLines;
+    signatures = nextSignatures;
+    pairSignatures = nextPairSignatures;
+    head = 0;
+  }
+
+  private static void checkIndex(int index, int bound) {
+    if (index < 0 || index >= bound) {
+      throw new IndexOutOfBoundsException("Wrong index: " + index);
+    }
+  }
+
+  private static long signature(byte[] data) {
+    long signature = 0;
+    for (byte b : data) {
+      signature |= 1L << (b & 0x3F);
+    }
+    return signature;
+  }
+
+  private static long pairSignature(byte[] data) {
+    long signature = 0;
+    for (int i = 1;i < data.length;i++) {
+      signature |= 1L << ((data[i - 1] * 31 + data[i]) & 0x3F);
+    }
+    return signature;
+  }
+
+  private static boolean contains(byte[] data, byte[] pattern) {
+    for (int i = 0;i <= data.length - pattern.length;i++) {
+      if (regionMatches(data, i, pattern)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean regionMatches(byte[] data, int offset, byte[] pattern) {
+    if (offset + pattern.length > data.length) {
+      return false;
+    }
+    for (int i = 0;i < pattern.length;i++) {
+      if (data[offset + i] != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  static byte[] encode(int[] codePoints) {
+    int length = 0;
+    for (int cp : codePoints) {
+      length += cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    }
+    byte[] data = new byte[length];
+    int i = 0;
+    for (int cp : codePoints) {
+      if (cp < 0x80) {
+        data[i++] = (byte) cp;
+      } else if (cp < 0x800) {
+        data[i++] = (byte) (0xC0 | (cp >> 6));
+        data[i++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (cp < 0x10000) {
+        data[i++] = (byte) (0xE0 | (cp >> 12));
+        data[i++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        data[i++] = (byte) (0x80 | (cp & 0x3F));
+      } else {
+        data[i++] = (byte) (0xF0 | (cp >> 18));
+        data[i++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        data[i++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        data[i++] = (byte) (0x80 | (cp & 0x3F));
+      }
+    }
+    return data;
+  }
+
+  static int[] decode(byte[] data) {
+    int length = 0;
+    for (byte b : data) {
+      if ((b & 0xC0) != 0x80) {
+        length++;
+      }
+    }
+    int[] codePoints = new int[length];
+    int j = 0;
+    for (int i = 0;i < data.length;) {
+      int b = data[i++] & 0xFF;
+      int cp;
+      if (b < 0x80) {
+        cp = b;
+      } else if (b < 0xE0) {
+        cp = b & 0x1F;
+      } else if (b < 0xF0) {
+        cp = b & 0x0F;
+      } else {
+        cp = b & 0x07;
+      }
+      while (i < data.length && (data[i] & 0xC0) == 0x80) {
+        cp = (cp << 6) | (data[i++] & 0x3F);
+      }
+      codePoints[j++] = cp;
+    }
+    return codePoints;
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.readline;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable prefix trie of the key sequences of a {@link Keymap}, matching a buffer costs
+ * O(sequence length) instead of scanning every binding.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+final class KeyTrie {
+
+  private static final int[] NO_KEYS = new int[0];
+  private static final KeyTrie[] NO_CHILDREN = new KeyTrie[0];
+  private static final KeyEvent[] LATIN1_EVENTS = new KeyEvent[256];
+
+  static {
+    for (int c = 0;c < LATIN1_EVENTS.length;c++) {
+      LATIN1_EVENTS[c] = createKeyEvent(c);
+    }
+  }
+
+  /**
+   * Compile the bindings into a trie, when several bindings have the same key sequence the last one wins.
+   *
+   * @param bindings the bindings
+   * @return the trie
+   */
+  static KeyTrie compile(List<KeyEvent> bindings) {
+    Builder root = new Builder();
+    for (KeyEvent binding : bindings) {
+      int length = binding.length();
+      if (length > 0) {
+        Builder node = root;
+        for (int i = 0;i < length;i++) {
+          node = node.children.computeIfAbsent(binding.getCodePointAt(i), key -> new Builder());
+        }
+        node.event = binding;
+      }
+    }
+    return root.build();
+  }
+
+  private final KeyEvent event;     // The binding of the sequence ending at this node or null
+  private final int[] keys;         // The sorted code points of the children
+  private final KeyTrie[] children;
+
+  private KeyTrie(KeyEvent event, int[] keys, KeyTrie[] children) {
+    this.event = event;
+    this.keys = keys;
+    this.children = children;
+  }
+
+  /**
+   * Match the start of a ring buffer, the code point {@code i} of the buffer is at the index
+   * {@code (offset + i) & mask} of the array.
+   *
+   * @param buffer the ring buffer array, its length is a power of two
+   * @param offset the buffer offset
+   * @param length the buffer length
+   * @param mask the array length minus one
+   * @return the longest binding prefixing the buffer, otherwise null when the buffer is empty or is a prefix
+   *         of a binding, otherwise an event for the first code point of the buffer
+   */
+  KeyEvent match(int[] buffer, int offset, int length, int mask) {
+    if (length == 0) {
+      return null;
+    }
+    KeyEvent candidate = null;
+    KeyTrie node = this;
+    int i = 0;
+    while (i < length) {
+      int index = Arrays.binarySearch(node.keys, buffer[(offset + i) & mask]);
+      if (index < 0) {
+        break;
+      }
+      node = node.children[index];
+      if (node.event != null) {
+        candidate = node.event;
+      }
+      i++;
+    }
+    if (candidate != null) {
+      return candidate;
+    }
+    if (i == length && node.keys.length > 0) {
+      // Wait for more code points
+      return null;
+    }
+    return keyEvent(buffer[offset & mask]);
+  }
+
+  private static KeyEvent keyEvent(int c) {
+    return c >= 0 && c < LATIN1_EVENTS.length ? LATIN1_EVENTS[c] : createKeyEvent(c);
+  }
+
+  private static KeyEvent createKeyEvent(int c) {
+    return new KeyEvent() {
+      @Override
+      public int getCodePointAt(int index) throws IndexOutOfBoundsException {
+        if (index != 0) {
+          throw new IndexOutOfBoundsException("Wrong index " + index);
+        }
+        return c;
+      }
+      @Override
+      public int length() {
+        return 1;
+      }
+      @Override
+      public String toString() {
+        return "key:" + c;
+      }
+    };
+  }
+
+  private static class Builder {
+
+    private final TreeMap<Integer, Builder> children = new TreeMap<>();
+    private KeyEvent event;
+
+    private KeyTrie build() {
+      if (children.isEmpty()) {
+        return new KeyTrie(event, NO_KEYS, NO_CHILDREN);
+      }
+      int[] keys = new int[children.size()];
+      KeyTrie[] nodes = new KeyTrie[children.size()];
+      int i = 0;
+      for (Map.Entry<Integer, Builder> child : children.entrySet()) {
+        keys[i] = child.getKey();
+        nodes[i++] = child.getValue().build();
+      }
+      return new KeyTrie(event, keys, nodes);
+    }
+  }
+}
@@ -34,6 +34,7 @@ public class Keymap {
   }
 
   final List<KeyEvent> bindings;
+  private volatile KeyTrie trie;
 
   public Keymap() {
     this(Arrays.asList(Keys.values()));
@@ -80,6 +81,20 @@ public class Keymap {
    */
   public Keymap bindFunction(int[] keyseq, String function) {
     bindings.add(new FunctionEvent(function, keyseq));
+    trie = null;
     return this;
   }
+
+  /**
+   * @return the bindings compiled to a trie, shared by the event queues created from this keymap until
+   *         a new function is bound
+   */
+  KeyTrie trie() {
+    KeyTrie compiled = trie;
+    if (compiled == null) {
+      compiled = KeyTrie.compile(bindings);
+      trie = compiled;
+    }
+    return compiled;
+  }
 }
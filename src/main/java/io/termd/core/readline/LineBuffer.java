@@ -16,6 +16,7 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.io.CodePointSink;
 import io.termd.core.util.Vector;
 import io.termd.core.util.Helper;
 import io.termd.core.util.Wcwidth;
@@ -28,16 +29,22 @@ import java.util.function.Consumer;
  */
 public class LineBuffer {
 
+  private static final int INITIAL_CAPACITY = 16;
+
   private int[] data;
   private int cursor;
   private int size;
+  private int[] positions;    // The cursor position at each offset encoded as row * positionsWidth + col
+  private int positionsWidth; // The screen width of the positions
+  private int positionsValid; // The number of valid positions, computed lazily
+  private Update update; // Created on the first update
 
   public LineBuffer() {
-    data = new int[1000];
+    data = new int[INITIAL_CAPACITY];
   }
 
   private LineBuffer(LineBuffer that) {
-    data = that.data.clone();
+    data = Arrays.copyOf(that.data, that.size + INITIAL_CAPACITY);
     cursor = that.cursor;
     size = that.size;
   }
@@ -80,14 +87,11 @@ public class LineBuffer {
    * @throws IllegalArgumentException when an illegal character is inserted
    */
   public LineBuffer insert(int cp) {
-    int w = Wcwidth.of(cp);
-    if (w == -1) {
-      if (cp != '\n') {
-        throw new IllegalArgumentException("LineBuffer can only contain \n control char");
-      }
-    } else if (w != 1) {
-      throw new IllegalArgumentException("LineBuffer cannot contain chars of width!=1 for the moment");
+    if (!isValid(cp)) {
+      throw new IllegalArgumentException("LineBuffer can only contain \n control char");
     }
+    ensureCapacity(size + 1);
+    invalidate(cursor);
     if (cursor < size) {
       System.arraycopy(data, cursor, data, cursor + 1, size - cursor);
     }
@@ -96,6 +100,48 @@ public class LineBuffer {
     return this;
   }
 
+  /**
+   * Insert a range of code points at the current cursor position at once, the code points that cannot be
+   * contained by the buffer are skipped.
+   *
+   * @param codePoints the code points
+   * @param off the offset of the first code point
+   * @param len the number of code points
+   * @return the number of skipped code points
+   */
+  public int insertValid(int[] codePoints, int off, int len) {
+    ensureCapacity(size + len);
+    invalidate(cursor);
+    System.arraycopy(data, cursor, data, cursor + len, size - cursor);
+    int pos = cursor;
+    for (int i = off;i < off + len;i++) {
+      int cp = codePoints[i];
+      if (isValid(cp)) {
+        data[pos++] = cp;
+      }
+    }
+    int inserted = pos - cursor;
+    if (inserted < len) {
+      System.arraycopy(data, cursor + len, data, pos, size - cursor);
+    }
+    cursor = pos;
+    size += inserted;
+    return len - inserted;
+  }
+
+  /**
+   * @return true when the code point can be contained by a buffer: {@code \n} or a code point of width 0, 1 or 2
+   */
+  static boolean isValid(int cp) {
+    return cp == '\n' || (cp != 0 && Wcwidth.of(cp) >= 0);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > data.length) {
+      data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+    }
+  }
+
   public LineStatus.Ext insertEscaped(int... codePoints) {
     LineStatus.Ext status = new LineStatus.Ext();
     Helper.consumeTo(toArray(), status);
@@ -176,11 +222,13 @@ public class LineBuffer {
   public int delete(int delta) {
     if (delta > 0) {
       delta = Math.min(delta, size - cursor);
-      System.arraycopy(data, cursor + delta, data, cursor, size - cursor + delta);
+      invalidate(cursor);
+      System.arraycopy(data, cursor + delta, data, cursor, size - cursor - delta);
       size -= delta;
       return delta;
     } else if (delta < 0) {
       delta = - Math.min(- delta, cursor);
+      invalidate(cursor + delta);
       System.arraycopy(data, cursor, data, cursor + delta, size - cursor);
       size += delta;
       cursor += delta;
@@ -195,7 +243,10 @@ public class LineBuffer {
   }
 
   public void setSize(int size) {
-    this.size = size >= 0 ? size : 0;
+    ensureCapacity(size);
+    size = size >= 0 ? size : 0;
+    invalidate(Math.min(this.size, size));
+    this.size = size;
     if (cursor > size) {
       cursor = size;
     }
@@ -214,7 +265,56 @@ public class LineBuffer {
     return new LineBuffer(this);
   }
 
+  /**
+   * Replace the content and the cursor of this buffer with the content and the cursor of another buffer.
+   *
+   * @param that the other buffer
+   * @return this object
+   */
+  LineBuffer set(LineBuffer that) {
+    return set(null, that);
+  }
+
+  /**
+   * Replace the content of this buffer with a prefix followed by the content of another buffer, the cursor is
+   * set to the cursor of the other buffer shifted by the prefix length.
+   *
+   * @param prefix the prefix or null
+   * @param that the other buffer
+   * @return this object
+   */
+  LineBuffer set(int[] prefix, LineBuffer that) {
+    int offset = prefix != null ? prefix.length : 0;
+    ensureCapacity(offset + that.size);
+    if (prefix == null && that.positionsValid > 0) {
+      // Same content, same positions
+      System.arraycopy(that.data, 0, data, 0, that.size);
+      if (positions == null || positions.length < that.positionsValid) {
+        positions = new int[data.length + 1];
+      }
+      System.arraycopy(that.positions, 0, positions, 0, that.positionsValid);
+      positionsWidth = that.positionsWidth;
+      positionsValid = that.positionsValid;
+    } else {
+      // The positions before the first changed code point remain valid
+      int changed = 0;
+      int max = Math.min(size, offset + that.size);
+      while (changed < max && data[changed] == (changed < offset ? prefix[changed] : that.data[changed - offset])) {
+        changed++;
+      }
+      invalidate(changed);
+      if (prefix != null) {
+        System.arraycopy(prefix, 0, data, 0, offset);
+      }
+      System.arraycopy(that.data, 0, data, offset, that.size);
+    }
+    size = offset + that.size;
+    cursor = offset + that.cursor;
+    return this;
+  }
+
   public void clear() {
+    invalidate(0);
     size = 0;
     cursor = 0;
   }
@@ -255,237 +355,496 @@ public class LineBuffer {
     if (offset > size) {
       throw new IndexOutOfBoundsException("Offset cannot bebe greater than the buffer size");
     }
-    return Helper.computePosition(data, new Vector(0, 0), offset, width);
+    int pos = position(offset, width);
+    return new Vector(pos % width, pos / width);
   }
 
-  private int findEndOfLine(int offset) {
-    while (offset < size) {
-      int c = data[offset];
-      int w = Wcwidth.of(c);
-      if (w == -1) {
-        if (c == '\n') {
-          break; // ?? unsure
+  /**
+   * Compute the encoded cursor position at an offset, the positions are indexed incrementally: the positions
+   * preceding the first modified offset remain valid and the index is only extended up to the requested offset.
+   *
+   * @return the position encoded as {@code row * width + col}
+   */
+  private int position(int offset, int width) {
+    if (width != positionsWidth) {
+      positionsWidth = width;
+      positionsValid = 0;
+    }
+    if (offset >= positionsValid) {
+      if (positions == null || positions.length <= offset) {
+        positions = positions == null ? new int[data.length + 1] : Arrays.copyOf(positions, data.length + 1);
+      }
+      int i = positionsValid;
+      if (i == 0) {
+        positions[i++] = 0;
+      }
+      int col = positions[i - 1] % width;
+      int row = positions[i - 1] / width;
+      while (i <= offset) {
+        int cp = data[i - 1];
+        if (cp == '\n') {
+          col = 0;
+          row++;
         } else {
-          throw new UnsupportedOperationException();
+          int w = Wcwidth.of(cp);
+          if (w > 0) {
+            if (col > 0 && col + w > width) {
+              col = 0;
+              row++;
+            }
+            col += w;
+            if (col >= width) {
+              col = 0;
+              row++;
+            }
+          }
         }
+        positions[i++] = row * width + col;
       }
-      offset++;
+      positionsValid = i;
     }
-    return offset;
+    return positions[offset];
   }
 
+  /**
+   * Invalidate the positions following an offset.
+   */
+  private void invalidate(int offset) {
+    if (positionsValid > offset + 1) {
+      positionsValid = offset + 1;
+    }
+  }
+
+  /**
+   * @return the encoded position of the cell displaying the code point at an offset or -1 when the code point
+   * is not displayed in its own cell
+   */
+  private int cell(int offset, int width) {
+    int w = Wcwidth.of(data[offset]);
+    if (w <= 0) {
+      return -1;
+    }
+    int pos = position(offset, width);
+    int col = pos % width;
+    if (col > 0 && col + w > width) {
+      // Wraps to the next row
+      return pos - col + width;
+    }
+    return pos;
+  }
+
+  /**
+   * @return the end offset of the cluster starting at an offset, i.e the code point followed by its combining
+   * code points
+   */
+  private int clusterEnd(int offset) {
+    int end = offset + 1;
+    while (end < size && Wcwidth.of(data[end]) == 0) {
+      end++;
+    }
+    return end;
+  }
+
+  /**
+   * @return an offset preceding the code points displayed on a row, found by binary search in the positions
+   */
+  private int rowStart(int row, int width) {
+    position(size, width);
+    int target = row * width;
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (positions[mid] < target) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    // The previous code point may be wrapped to this row
+    return low > 0 ? low - 1 : 0;
+  }
+
+  /**
+   * @return the last row displaying this buffer
+   */
+  private int lastRow(int width) {
+    int pos = position(size, width);
+    if (size > 0 && data[size - 1] != '\n' && pos > 0) {
+      pos--;
+    }
+    return pos / width;
+  }
+
+  /**
+   * Update the screen displaying this buffer to display the {@code dst} buffer instead and then copy the
+   * {@code dst} buffer in this buffer. The output is written at once to the consumer.
+   *
+   * @param dst the buffer to display
+   * @param out the screen output
+   * @param width the screen width
+   */
   public void update(LineBuffer dst, Consumer<int[]> out, int width) {
-    new Update(out, width).perform(dst);
+    update(dst, out, width, CursorMotion.ANSI);
+  }
+
+  /**
+   * Like {@link #update(LineBuffer, Consumer, int)} with the cursor motions of a device.
+   */
+  void update(LineBuffer dst, Consumer<int[]> out, int width, CursorMotion motion) {
+    if (update == null) {
+      update = new Update();
+    }
+    update.perform(dst, out, width, motion);
   }
 
-  // The update algorithm encapsulated in an inner class
-  // todo : use term capabilities instead of hardcoded ansi programming
+  // The update algorithm encapsulated in an inner class, it is retained by the buffer to reuse its output buffer
   // todo : support other control chars
-  // todo : support codepoint of with != 1 (like combining chars, etc...)
-  // todo : issue existing chars for moving right instead of cursor left movement
   private class Update {
 
-    private final Consumer<int[]> out;
-    private final int width;
-    private int scrCol, scrRow; // The current screen cursor position
-    private int srcIdx, srcCol, srcRow; // The source state
-    private int dstIdx, dstCol, dstRow; // The destination state
+    private static final int INITIAL_OUTPUT_SIZE = 64;
+    private static final int MAX_RETAINED_OUTPUT_SIZE = 4096;
 
-    public Update(Consumer<int[]> out, int width) {
-      this.out = out;
+    // The cursor move plans
+    private static final int RELATIVE = 0, REPRINT = 1, CR = 2, CR_RELATIVE = 3, CR_REPRINT = 4, ABSOLUTE = 5;
+
+    private CursorMotion motion;
+    private int width;
+    private int[] output = new int[INITIAL_OUTPUT_SIZE];
+    private int count;
+    private int scrCol, scrRow; // The current screen cursor position, the column is the width before a wrap
+    private int lastRow;        // The last row existing on the screen
+    private int[] srcCells;     // The cluster offsets of the source row cells or -1
+    private int[] dstCells;     // The cluster offsets of the destination row cells or -1
+    private int plan;           // The last planned column move
+
+    void perform(LineBuffer dst, Consumer<int[]> out, int width, CursorMotion motion) {
+      this.motion = motion;
       this.width = width;
-      this.scrCol = getCursorPosition(width).x();
-      this.scrRow = getCursorPosition(width).y();
-    }
+      if (srcCells == null || srcCells.length != width) {
+        srcCells = new int[width];
+        dstCells = new int[width];
+      }
+      int pos = position(cursor, width);
+      scrCol = pos % width;
+      scrRow = pos / width;
+      int srcLast = lastRow(width);
+      int dstLast = dst.lastRow(width);
+      lastRow = Math.max(scrRow, srcLast);
+      count = 0;
+
+      // The rows preceding the cluster of the first changed code point are already displayed
+      int changed = 0;
+      int max = Math.min(size, dst.size);
+      while (changed < max && data[changed] == dst.data[changed]) {
+        changed++;
+      }
+      if (changed < size || changed < dst.size) {
+        while (changed > 0 && Wcwidth.of(data[changed - 1]) == 0) {
+          changed--;
+        }
+        if (changed > 0) {
+          changed--;
+        }
+        for (int row = position(changed, width) / width;row <= Math.max(srcLast, dstLast);row++) {
+          updateRow(dst, row);
+        }
+        if (dstLast > lastRow) {
+          // Create the rows of the trailing line feeds
+          fill(dst, dstLast, dstCells);
+          moveCursor(0, dstLast, dst);
+        }
+      }
 
-    public void perform(LineBuffer dst) {
+      // Move cursor to initial position
+      pos = dst.position(dst.cursor, width);
+      fill(dst, pos / width, dstCells);
+      moveCursor(pos % width, pos / width, dst);
 
-      while (dstIdx < dst.size) {
+      // Update internal state
+      set(dst);
 
-        int eol = dst.findEndOfLine(dstIdx);
-        boolean needGlitchCorrection = dstIdx < eol;
+      // Write the output at once
+      flush(out);
+    }
 
-        // Handle one dest line at a time
-        while (dstIdx < eol) {
-          int c = dst.data[dstIdx];
-          int w = Wcwidth.of(c);
-          if (w != 1) {
-            throw new UnsupportedOperationException();
-          }
-          if (srcIdx < size && new Vector(srcCol, srcRow).equals(new Vector(dstCol, dstRow))) {
-            if (data[srcIdx] == dst.data[dstIdx]) {
-              dstCol += w;
-              if (dstCol == width) {
-                dstCol = 0;
-                dstRow++;
-              }
-            } else {
-              moveCursor(dstCol, dstRow);
-              out.accept(new int[]{c});
-              dstCol += w;
-              if (dstCol == width) {
-                dstCol = 0;
-                dstRow++;
-              }
-              scrCol = dstCol;
-              scrRow = dstRow;
-            }
-            dstIdx++;
-          } else {
-            moveCursor(dstCol, dstRow);
-            dstIdx++;
-            out.accept(new int[]{c});
-            dstCol += w;
-            if (dstCol == width) {
-              dstCol = 0;
-              dstRow++;
-            }
-            scrCol = dstCol;
-            scrRow = dstRow;
-          }
-          ensure(dstCol, dstRow);
+    private void updateRow(LineBuffer dst, int row) {
+      int srcEnd = fill(LineBuffer.this, row, srcCells);
+      int dstEnd = fill(dst, row, dstCells);
+      int col = 0;
+      while (col < dstEnd) {
+        int index = dstCells[col];
+        int next = col + 1;
+        while (next < width && dstCells[next] == index) {
+          next++;
         }
-
-        // Glitch correction if needed
-        if (needGlitchCorrection && dstCol == 0) {
-          out.accept(new int[]{' ','\r'});
+        if (!isDisplayed(dst, col, next)) {
+          if (col > 0 || scrCol != width || scrRow + 1 != row) {
+            moveCursor(col, row, dst);
+          } // else the cursor wraps to the row when printing
+          emitCluster(dst, index);
+          scrCol = next;
+          scrRow = row;
+          lastRow = Math.max(lastRow, row);
         }
+        col = next;
+      }
+      if (srcEnd > dstEnd) {
+        moveCursor(dstEnd, row, dst);
+        eraseLine();
+      }
+    }
 
-        // Remove extra chars if needed
-        if (dstIdx < dst.size) {
-          dstIdx++;
-          dstCol = 0;
-          ++dstRow;
-          int _col = srcCol, _row = srcRow;
-          if (ensure(dstCol, dstRow)) {
-            moveCursor(_col, _row);
-            out.accept(new int[]{'\033','[', 'K'});
+    /**
+     * Fill the cells of a row with the offsets of the clusters they display.
+     *
+     * @return the column following the last cell displaying a cluster
+     */
+    private int fill(LineBuffer buf, int row, int[] cells) {
+      Arrays.fill(cells, -1);
+      int end = 0;
+      for (int i = buf.rowStart(row, width);i < buf.size;i++) {
+        int cell = buf.cell(i, width);
+        if (cell == -1) {
+          if (buf.data[i] == '\n' && buf.position(i, width) / width >= row) {
+            break;
           }
+        } else if (cell / width > row) {
+          break;
+        } else if (cell / width == row) {
+          int col = cell % width;
+          end = Math.min(col + Wcwidth.of(buf.data[i]), width);
+          Arrays.fill(cells, col, end, i);
         }
+      }
+      return end;
+    }
 
-        // We may need to issue some \n after we are done
-        while (scrRow < dstRow) {
-          out.accept(new int[]{'\n'});
-          scrRow++;
-          scrCol = 0;
+    /**
+     * @return true when the source row displays the destination cluster of the {@code [col,next)} cells
+     */
+    private boolean isDisplayed(LineBuffer dst, int col, int next) {
+      int index = srcCells[col];
+      if (index == -1 || (col > 0 && srcCells[col - 1] == index) || (next < width && srcCells[next] == index)) {
+        return false;
+      }
+      int from = dstCells[col];
+      int len = clusterEnd(index) - index;
+      if (dst.clusterEnd(from) - from != len) {
+        return false;
+      }
+      for (int i = 0;i < len;i++) {
+        if (data[index + i] != dst.data[from + i]) {
+          return false;
         }
       }
+      return true;
+    }
 
-      // Erase extra remaining chars
-      if (srcIdx < size) {
-        int _col = srcCol;
-        int _row = srcRow;
-        int count = 0;
-        while (srcIdx < size) {
-          int c = data[srcIdx++];
-          if (c == '\n') {
-            if (count > 0) {
-              moveCursor(_col, _row);
-              out.accept(new int[]{'\033', '[', 'K'});
-              count = 0;
-            }
-            _col = srcCol = 0;
-            _row = ++srcRow;
-          } else {
-            int w = Wcwidth.of(c);
-            if (w != 1) {
-              throw new UnsupportedOperationException();
-            }
-            srcCol++;
-            count++;
-            if (srcCol == width) {
-              if (count > 0) {
-                moveCursor(_col, _row);
-                out.accept(new int[]{'\033', '[', 'K'});
-                count = 0;
-                _col = srcCol = 0;
-                _row = ++srcRow;
-              } else {
-                srcCol = 0;
-                srcRow++;
-              }
-            }
+    /**
+     * @return the offset of the cluster displayed by the first cell of a row or -1
+     */
+    private int firstCell(LineBuffer buf, int row) {
+      for (int i = buf.rowStart(row, width);i < buf.size;i++) {
+        int cell = buf.cell(i, width);
+        if (cell == -1) {
+          if (buf.data[i] == '\n' && buf.position(i, width) / width >= row) {
+            break;
           }
-        }
-        if (count > 0) {
-          moveCursor(_col, _row);
-          out.accept(new int[]{'\033', '[', 'K'});
+        } else if (cell >= row * width) {
+          return cell == row * width ? i : -1;
         }
       }
-
-      // Move cursor to initial position
-      moveCursor(dst.getCursorPosition(width).x(), dst.getCursorPosition(width).y());
-
-      // Update internal state
-      data = dst.data.clone();
-      cursor = dst.cursor;
-      size = dst.size;
+      return -1;
     }
 
     /**
-     * Ensure the source pointers are at least matching the specified column and row
+     * Move the cursor to the specified coordinates with the cheapest sequences, this updates the internal
+     * physical cursor. The row is moved first either with a move sequence or with line feeds, then the column is
+     * moved either relatively, absolutely, after a carriage return or by printing again the clusters already
+     * displayed on the row.
      *
      * @param col the column
      * @param row the row
-     * @return true if we skipped some source chars when moving the source pointers
+     * @param line the buffer displayed on the row with the cells filled, the cells preceding the column must
+     *             be displayed
      */
-    private boolean ensure(int col, int row) {
-      boolean ret = false;
-      while (srcIdx < size) {
-        if (srcRow > row || (srcRow == row && srcCol >= col)) {
-          break;
+    private void moveCursor(int col, int row, LineBuffer line) {
+      while (scrCol == width) {
+        // The cursor is beyond the last column, print the first cell of the next row to wrap
+        // whether the terminal wraps eagerly or not
+        int index = firstCell(line, scrRow + 1);
+        if (index != -1) {
+          emitCluster(line, index);
+          scrCol = Math.min(Wcwidth.of(line.data[index]), width);
+        } else {
+          emit(' ');
+          scrCol = 1;
         }
-        int c = data[srcIdx];
-        int w = Wcwidth.of(c);
-        if (w == 1) {
-          ret = true;
-          srcCol++;
-          if (srcCol == width) {
-            srcRow++;
-            srcCol = 0;
+        lastRow = Math.max(lastRow, ++scrRow);
+      }
+      if (row > scrRow) {
+        // Line feeds create the missing rows and move to the first column
+        int[] down = motion.down(Math.min(row, lastRow) - scrRow);
+        int feeds = Math.max(row - lastRow, 0);
+        if (feeds > 0 || down.length + planColumn(scrCol, col, line) > row - scrRow + planColumn(0, col, line)) {
+          if (feeds > 0 && lastRow > scrRow && down.length < lastRow - scrRow) {
+            emit(down);
+          } else {
+            feeds = row - scrRow;
+          }
+          for (int i = 0;i < feeds;i++) {
+            emit('\n');
           }
-        } else if (c == '\n') {
-          srcCol = 0;
-          srcRow++;
+          scrCol = 0;
         } else {
-          throw new UnsupportedOperationException();
+          emit(down);
         }
-        srcIdx++;
+        lastRow = Math.max(lastRow, row);
+      } else if (row < scrRow) {
+        emit(motion.up(scrRow - row));
+      }
+      scrRow = row;
+      if (col != scrCol) {
+        planColumn(scrCol, col, line);
+        switch (plan) {
+          case RELATIVE:
+            emit(col > scrCol ? motion.right(col - scrCol) : motion.left(scrCol - col));
+            break;
+          case REPRINT:
+            reprint(line, scrCol, col);
+            break;
+          case CR:
+            emit(motion.carriageReturn);
+            break;
+          case CR_RELATIVE:
+            emit(motion.carriageReturn);
+            emit(motion.right(col));
+            break;
+          case CR_REPRINT:
+            emit(motion.carriageReturn);
+            reprint(line, 0, col);
+            break;
+          case ABSOLUTE:
+            emit(motion.column(col));
+            break;
+        }
+        scrCol = col;
       }
-      return ret;
     }
 
     /**
-     * Move the cursor to the specified coordinates, this updates the internal physical cursor.
+     * Plan the cheapest move from the {@code from} column to the {@code col} column of the same row.
      *
-     * @param col the column
-     * @param row the row
+     * @return the plan cost
      */
-    private void moveCursor(int col, int row) {
-      if (scrCol != col) {
-        if (col == 0) {
-          out.accept(new int[]{'\r'});
-          scrCol = 0;
-        } else {
-          while (scrCol != col) {
-            if (scrCol < col) {
-              scrCol++;
-              out.accept(new int[]{'\033','[','1','C'});
-            } else {
-              scrCol--;
-              out.accept(new int[]{'\b'});
-            }
-          }
+    private int planColumn(int from, int col, LineBuffer line) {
+      if (col == from) {
+        plan = RELATIVE;
+        return 0;
+      }
+      int cost = (col > from ? motion.right(col - from) : motion.left(from - col)).length;
+      plan = RELATIVE;
+      int len = col > from ? reprintLength(line, from, col) : -1;
+      if (len != -1 && len < cost) {
+        cost = len;
+        plan = REPRINT;
+      }
+      int cr = motion.carriageReturn.length;
+      if (col == 0) {
+        if (cr <= cost) {
+          cost = cr;
+          plan = CR;
+        }
+      } else {
+        int right = motion.right(col).length;
+        if (cr + right < cost) {
+          cost = cr + right;
+          plan = CR_RELATIVE;
+        }
+        len = reprintLength(line, 0, col);
+        if (len != -1 && cr + len < cost) {
+          cost = cr + len;
+          plan = CR_REPRINT;
+        }
+      }
+      int column = motion.column(col).length;
+      if (column < cost) {
+        cost = column;
+        plan = ABSOLUTE;
+      }
+      return cost;
+    }
+
+    /**
+     * @return the number of code points displayed by the {@code [from,to)} cells or -1 when they cannot be printed
+     * again, i.e a cell is empty or the range splits a wide cluster
+     */
+    private int reprintLength(LineBuffer line, int from, int to) {
+      if ((from > 0 && dstCells[from - 1] == dstCells[from]) || (to < width && dstCells[to - 1] == dstCells[to])) {
+        return -1;
+      }
+      int len = 0;
+      for (int col = from;col < to;col++) {
+        int index = dstCells[col];
+        if (index == -1) {
+          return -1;
+        }
+        if (col == from || dstCells[col - 1] != index) {
+          len += line.clusterEnd(index) - index;
+        }
+      }
+      return len;
+    }
+
+    private void reprint(LineBuffer line, int from, int to) {
+      for (int col = from;col < to;col++) {
+        if (col == from || dstCells[col - 1] != dstCells[col]) {
+          emitCluster(line, dstCells[col]);
         }
       }
-      while (scrRow != row) {
-        if (row < scrRow) {
-          scrRow--;
-          out.accept(new int[]{27,'[','1','A'});
+    }
+
+    private void emitCluster(LineBuffer buf, int index) {
+      for (int i = index, end = buf.clusterEnd(index);i < end;i++) {
+        emit(buf.data[i]);
+      }
+    }
+
+    private void eraseLine() {
+      emit('\033', '[', 'K');
+    }
+
+    private void emit(int c) {
+      if (count == output.length) {
+        output = Arrays.copyOf(output, count * 2);
+      }
+      output[count++] = c;
+    }
+
+    private void emit(int[] seq) {
+      for (int c : seq) {
+        emit(c);
+      }
+    }
+
+    private void emit(int c1, int c2, int c3) {
+      emit(c1);
+      emit(c2);
+      emit(c3);
+    }
+
+    private void flush(Consumer<int[]> out) {
+      if (count > 0) {
+        if (out instanceof CodePointSink) {
+          ((CodePointSink) out).accept(output, 0, count);
         } else {
-          scrRow++;
-          out.accept(new int[]{27,'[','1','B'});
+          out.accept(Arrays.copyOf(output, count));
         }
+        count = 0;
+      }
+      if (output.length > MAX_RETAINED_OUTPUT_SIZE) {
+        output = new int[INITIAL_OUTPUT_SIZE];
       }
     }
   }
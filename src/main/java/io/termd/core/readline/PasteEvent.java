@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+/**
+ * A block of text pasted by the terminal in bracketed paste mode, the key sequence of the event is the
+ * text surrounded by the {@code ESC[200~} and {@code ESC[201~} markers.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+class PasteEvent implements KeyEvent {
+
+  static final int[] START = {27, '[', '2', '0', '0', '~'};
+  static final int[] END = {27, '[', '2', '0', '1', '~'};
+
+  private final int[] text;
+
+  PasteEvent(int[] text) {
+    this.text = text;
+  }
+
+  /**
+   * @return the pasted text
+   */
+  int[] text() {
+    return text;
+  }
+
+  @Override
+  public int getCodePointAt(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= length()) {
+      throw new IndexOutOfBoundsException("Wrong index: " + index);
+    }
+    if (index < START.length) {
+      return START[index];
+    }
+    index -= START.length;
+    if (index < text.length) {
+      return text[index];
+    }
+    return END[index - text.length];
+  }
+
+  @Override
+  public int length() {
+    return START.length + text.length + END.length;
+  }
+}
@@ -16,7 +16,9 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.term.Capability;
 import io.termd.core.term.Device;
+import io.termd.core.term.Sequence;
 import io.termd.core.term.TermInfo;
 import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
@@ -24,7 +26,8 @@ import io.termd.core.util.Logging;
 import io.termd.core.util.Vector;
 import io.termd.core.util.Helper;
 
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,7 +35,6 @@ import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.IntConsumer;
 import java.util.logging.Level;
-import java.util.stream.IntStream;
 
 /**
  * Make this class thread safe as SSH will access this class with different threds [sic].
@@ -41,18 +43,52 @@ import java.util.stream.IntStream;
  */
 public class Readline {
 
+  private static final Sequence ENTER_BRACKETED_PASTE = new Sequence("\033[?2004h");
+  private static final Sequence EXIT_BRACKETED_PASTE = new Sequence("\033[?2004l");
+
   private final Device device;
+  private final CursorMotion motion;
   private final Map<String, Function> functions = new HashMap<>();
   private final EventQueue decoder;
   private Interaction interaction;
   private Vector size;
-  private List<int[]> history;
+  private History history;
+  private boolean bracketedPaste;
 
   public Readline(Keymap keymap) {
-    this.device = TermInfo.defaultInfo().getDevice("xterm"); // For now use xterm
+    this(keymap, TermInfo.defaultInfo().getDevice("xterm")); // For now use xterm
+  }
+
+  public Readline(Keymap keymap, Device device) {
+    this.device = device;
+    this.motion = new CursorMotion(device);
+    this.bracketedPaste = device.getFeature(Capability.enter_bracketed_paste) != null;
     this.decoder = new EventQueue(keymap);
-    this.history = new ArrayList<>();
+    this.history = new History();
     addFunction(ACCEPT_LINE);
+    addFunction(REVERSE_SEARCH_HISTORY);
+  }
+
+  /**
+   * @return whether the bracketed paste mode is enabled during an interaction
+   */
+  public boolean isBracketedPaste() {
+    return bracketedPaste;
+  }
+
+  /**
+   * Enable the bracketed paste mode of the terminal during an interaction, a pasted block of text is then
+   * inserted at once in the line without being interpreted by the keymap. The mode is switched with the
+   * {@link Capability#enter_bracketed_paste} and {@link Capability#exit_bracketed_paste} sequences of the device,
+   * the xterm sequences are used when the device does not provide them. It is enabled by default when the device
+   * provides them.
+   *
+   * @param bracketedPaste true to enable the bracketed paste mode
+   * @return this object
+   */
+  public Readline setBracketedPaste(boolean bracketedPaste) {
+    this.bracketedPaste = bracketedPaste;
+    return this;
   }
 
   /**
@@ -63,12 +99,28 @@ public class Readline {
   }
 
   /**
-   * Set the history
+   * @return the current history as an {@link History}
+   */
+  public History lineHistory() {
+    return history;
+  }
+
+  /**
+   * Set the history, a list that is not an {@link History} is copied in a new history with the default
+   * capacity or the list size when it is greater: the changes made to the list afterwards are not seen by
+   * the readline and the lines added by the readline are not added to the list, use {@link #getHistory()}
+   * to access the history instead.
    *
    * @param history the history
    */
   public void setHistory(List<int[]> history) {
-    this.history = history;
+    if (history instanceof History) {
+      this.history = (History) history;
+    } else {
+      History copy = new History(Math.max(History.DEFAULT_CAPACITY, history.size()), false);
+      copy.addAll(history);
+      this.history = copy;
+    }
   }
 
   /**
@@ -108,16 +160,51 @@ public class Readline {
     while (true) {
       Interaction handler;
       KeyEvent event;
+      int[] printable = null;
+      int length = 0;
       synchronized (this) {
         if (decoder.hasNext() && interaction != null && !interaction.paused) {
           event = decoder.next();
           handler = interaction;
+          if (isPrintable(event)) {
+            // Coalesce the run of printable keys into a single insertion
+            printable = new int[16];
+            printable[length++] = event.getCodePointAt(0);
+            while (decoder.hasNext() && isPrintable(decoder.peek())) {
+              if (length == printable.length) {
+                printable = Arrays.copyOf(printable, length * 2);
+              }
+              printable[length++] = decoder.next().getCodePointAt(0);
+            }
+          }
         } else {
           return;
         }
       }
-      handler.handle(event);
+      if (printable != null) {
+        handler.insert(printable, length);
+      } else {
+        handler.handle(event);
+      }
+    }
+  }
+
+  private static int indexOf(int[] codePoints, int[] text) {
+    for (int i = 0;i <= codePoints.length - text.length;i++) {
+      int j = 0;
+      while (j < text.length && codePoints[i + j] == text[j]) {
+        j++;
+      }
+      if (j == text.length) {
+        return i;
+      }
     }
+    return -1;
+  }
+
+  private static boolean isPrintable(KeyEvent event) {
+    return !(event instanceof FunctionEvent) && event.length() == 1 && event.getCodePointAt(0) != '\n' &&
+        LineBuffer.isValid(event.getCodePointAt(0));
   }
 
   /**
@@ -189,9 +276,14 @@ public class Readline {
     private final Map<String, Object> data;
     private final LineBuffer line = new LineBuffer();
     private final LineBuffer buffer = new LineBuffer();
+    private final LineBuffer screen = new LineBuffer(); // The current prompt and buffer displayed on the screen
+    private final LineBuffer next = new LineBuffer();   // The next content of the screen
     private int historyIndex = -1;
     private String currentPrompt;
+    private int[] currentPromptCodePoints;
+    private final boolean bracketedPaste;
     private boolean paused;
+    private IncrementalSearch search;
 
     private Interaction(
         TtyConnection conn,
@@ -201,9 +293,10 @@ public class Readline {
       this.conn = conn;
       this.prompt = prompt;
       this.data = new HashMap<>();
-      this.currentPrompt = prompt;
+      setCurrentPrompt(prompt);
       this.requestHandler = requestHandler;
       this.completionHandler = completionHandler;
+      this.bracketedPaste = Readline.this.bracketedPaste;
     }
 
     /**
@@ -221,12 +314,19 @@ public class Readline {
         conn.setSizeHandler(prevSizeHandler);
         conn.setEventHandler(prevEventHandler);
       }
+      if (bracketedPaste) {
+        conn.write(device.getFeature(Capability.exit_bracketed_paste, EXIT_BRACKETED_PASTE).eval());
+      }
       requestHandler.accept(s);
       return true;
     }
 
     private void handle(KeyEvent event) {
 
+      if (search != null && search.handle(event)) {
+        return;
+      }
+
       // Very specific behavior that cannot be encapsulated in a function flow
       if (event.length() == 1) {
         if (event.getCodePointAt(0) == 4 && buffer.getSize() == 0) {
@@ -239,13 +339,21 @@ public class Readline {
           buffer.clear();
           data.clear();
           historyIndex = -1;
-          currentPrompt = prompt;
+          setCurrentPrompt(prompt);
           conn.stdoutHandler().accept(new int[]{'\n'});
           conn.write(interaction.prompt);
+          resetScreen();
           return;
         }
       }
-      if (event instanceof FunctionEvent) {
+      if (event instanceof PasteEvent) {
+        int[] text = lineBreaks(((PasteEvent) event).text());
+        LineBuffer buf = buffer.copy();
+        if (buf.insertValid(text, 0, text.length) > 0) {
+          conn.stdoutHandler().accept(new int[]{'\007'});
+        }
+        refresh(buf);
+      } else if (event instanceof FunctionEvent) {
         FunctionEvent fname = (FunctionEvent) event;
         Function function = functions.get(fname.name());
         if (function != null) {
@@ -270,6 +378,36 @@ public class Readline {
       }
     }
 
+    /**
+     * Turn the CR and CRLF line breaks of a pasted text into {@code \n}, terminals send the line breaks of a
+     * paste as CR.
+     */
+    private int[] lineBreaks(int[] text) {
+      int[] result = new int[text.length];
+      int length = 0;
+      for (int i = 0;i < text.length;i++) {
+        int codePoint = text[i];
+        if (codePoint == '\r') {
+          if (i + 1 < text.length && text[i + 1] == '\n') {
+            i++;
+          }
+          codePoint = '\n';
+        }
+        result[length++] = codePoint;
+      }
+      return length < text.length ? Arrays.copyOf(result, length) : result;
+    }
+
+    private void insert(int[] codePoints, int length) {
+      if (search != null) {
+        search.insert(codePoints, length);
+        return;
+      }
+      LineBuffer buf = buffer.copy();
+      buf.insertValid(codePoints, 0, length);
+      refresh(buf);
+    }
+
     void resize(int oldWith, int newWidth) {
 
       // Erase screen
@@ -309,7 +447,8 @@ public class Readline {
       out.accept(new int[]{'\033','[','1','K'});
 
       // Now redraw
-      out.accept(Helper.toCodePoints(currentPrompt));
+      out.accept(currentPromptCodePoints);
+      resetScreen();
       refresh(new LineBuffer(), newWidth);
     }
 
@@ -325,6 +464,13 @@ public class Readline {
       return history;
     }
 
+    /**
+     * @return the history as an {@link History}
+     */
+    public History lineHistory() {
+      return history;
+    }
+
     public int getHistoryIndex() {
       return historyIndex;
     }
@@ -349,16 +495,25 @@ public class Readline {
       return size;
     }
 
+    private void setCurrentPrompt(String prompt) {
+      currentPrompt = prompt;
+      currentPromptCodePoints = Helper.toCodePoints(prompt);
+    }
+
+    /**
+     * Signal the screen displays the current prompt followed by the buffer.
+     */
+    private void resetScreen() {
+      screen.set(currentPromptCodePoints, buffer);
+    }
+
     /**
      * Redraw the current line.
      */
     public void redraw() {
-      LineBuffer toto = new LineBuffer();
-      toto.insert(Helper.toCodePoints(currentPrompt));
-      toto.insert(buffer.toArray());
-      toto.setCursor(currentPrompt.length() + buffer.getCursor());
-      LineBuffer abc = new LineBuffer();
-      abc.update(toto, conn.stdoutHandler(), size.x());
+      screen.clear();
+      next.set(currentPromptCodePoints, buffer);
+      screen.update(next, conn.stdoutHandler(), size.x(), motion);
     }
 
     /**
@@ -372,24 +527,9 @@ public class Readline {
     }
 
     private void refresh(LineBuffer update, int width) {
-      LineBuffer copy3 = new LineBuffer();
-      IntStream.Builder consumer = IntStream.builder();
-      copy3.insert(Helper.toCodePoints(currentPrompt));
-      copy3.insert(buffer().toArray());
-      copy3.setCursor(currentPrompt.length() + buffer().getCursor());
-      LineBuffer copy2 = new LineBuffer();
-      copy2.insert(Helper.toCodePoints(currentPrompt));
-      copy2.insert(update.toArray());
-      copy2.setCursor(currentPrompt.length() + update.getCursor());
-      copy3.update(copy2, data -> {
-        for (int cp : data) {
-          consumer.accept(cp);
-        }
-      }, width);
-      conn.stdoutHandler().accept(consumer.build().toArray());
-      buffer.clear();
-      buffer.insert(update.toArray());
-      buffer.setCursor(update.getCursor());
+      next.set(currentPromptCodePoints, update);
+      screen.update(next, conn.stdoutHandler(), width, motion);
+      buffer.set(update);
     }
 
     public void resume() {
@@ -402,6 +542,103 @@ public class Readline {
       schedulePendingEvent();
     }
 
+    /**
+     * The reverse incremental search of the history: the prompt displays the query and the buffer displays the
+     * most recent line containing the query. Any key that does not edit the query ends the search and is then
+     * processed with the line found, Ctrl-G aborts the search.
+     */
+    private class IncrementalSearch {
+
+      private final String prompt = currentPrompt;
+      private final int[] line = buffer.toArray();
+      private final int cursor = buffer.getCursor();
+      private int[] query = new int[0];
+      private int index = -1;
+      private boolean failed;
+
+      private boolean handle(KeyEvent event) {
+        if (event instanceof FunctionEvent) {
+          switch (((FunctionEvent) event).name()) {
+            case "reverse-search-history":
+              search(index + 1);
+              return true;
+            case "backward-delete-char":
+              if (query.length > 0) {
+                query = Arrays.copyOf(query, query.length - 1);
+                index = -1;
+                search(0);
+              }
+              return true;
+          }
+        } else if (event.length() == 1 && event.getCodePointAt(0) == 7) {
+          abort();
+          return true;
+        } else if (isPrintable(event)) {
+          insert(new int[]{event.getCodePointAt(0)}, 1);
+          return true;
+        }
+        end();
+        return false;
+      }
+
+      private void insert(int[] codePoints, int length) {
+        int[] next = Arrays.copyOf(query, query.length + length);
+        System.arraycopy(codePoints, 0, next, query.length, length);
+        query = next;
+        search(Math.max(index, 0));
+      }
+
+      /**
+       * Search the query from a history index and display the result.
+       */
+      private void search(int from) {
+        LineBuffer buf;
+        if (query.length == 0) {
+          failed = false;
+          buf = new LineBuffer().insert(line).setCursor(cursor);
+        } else {
+          int match = history.search(query, from);
+          if (match != -1) {
+            int[] found = history.get(match);
+            index = match;
+            failed = false;
+            buf = new LineBuffer().insert(found).setCursor(indexOf(found, query));
+          } else {
+            failed = true;
+            buf = buffer.copy();
+            conn.stdoutHandler().accept(new int[]{'\007'});
+          }
+        }
+        setCurrentPrompt((failed ? "(failed reverse-i-search)`" : "(reverse-i-search)`") +
+            Helper.fromCodePoints(query) + "': ");
+        refresh(buf);
+      }
+
+      /**
+       * End the search with the line found.
+       */
+      private void end() {
+        search = null;
+        setCurrentPrompt(prompt);
+        if (index != -1 && query.length > 0) {
+          if (historyIndex == -1) {
+            data.put("abc", line);
+          }
+          historyIndex = index;
+        }
+        refresh(buffer.copy());
+      }
+
+      /**
+       * Abort the search and restore the line.
+       */
+      private void abort() {
+        search = null;
+        setCurrentPrompt(prompt);
+        refresh(new LineBuffer().insert(line).setCursor(cursor));
+      }
+    }
+
     private void install() {
       prevReadHandler = conn.getStdinHandler();
       prevSizeHandler = conn.getSizeHandler();
@@ -421,9 +658,29 @@ public class Readline {
         size = dim;
       });
       conn.setEventHandler(null);
+      resetScreen();
+      if (bracketedPaste) {
+        conn.write(device.getFeature(Capability.enter_bracketed_paste, ENTER_BRACKETED_PASTE).eval());
+      }
     }
   }
 
+  // Need to access internal state
+  private final Function REVERSE_SEARCH_HISTORY = new Function() {
+
+    @Override
+    public String name() {
+      return "reverse-search-history";
+    }
+
+    @Override
+    public void apply(Interaction interaction) {
+      interaction.search = interaction.new IncrementalSearch();
+      interaction.search.search(0);
+      interaction.resume();
+    }
+  };
+
   // Need to access internal state
   private final Function ACCEPT_LINE = new Function() {
 
@@ -442,19 +699,26 @@ public class Readline {
       interaction.buffer.clear();
       if (pb.isEscaping()) {
         interaction.line.delete(-1); // Remove \
-        interaction.currentPrompt = "> ";
+        interaction.setCurrentPrompt("> ");
         interaction.conn.write("\n> ");
+        interaction.resetScreen();
         interaction.resume();
       } else {
         if (pb.isQuoted()) {
           interaction.line.insert('\n');
           interaction.conn.write("\n> ");
-          interaction.currentPrompt = "> ";
+          interaction.setCurrentPrompt("> ");
+          interaction.resetScreen();
           interaction.resume();
         } else {
           String raw = interaction.line.toString();
           if (interaction.line.getSize() > 0) {
-            history.add(0, interaction.line.toArray());
+            try {
+              history.add(0, interaction.line.toArray());
+            } catch (UncheckedIOException e) {
+              // The line is still delivered when a persisted history cannot record it
+              Logging.READLINE.log(Level.WARNING, "Could not add the line to the history", e);
+            }
           }
           interaction.line.clear();
           interaction.conn.write("\n");
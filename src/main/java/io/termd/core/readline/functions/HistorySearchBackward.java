@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline.functions;
+
+import io.termd.core.readline.Function;
+import io.termd.core.readline.History;
+import io.termd.core.readline.LineBuffer;
+import io.termd.core.readline.Readline;
+
+import java.util.Arrays;
+
+/**
+ * Search backward in the history the line starting with the characters between the start of the current line
+ * and the cursor.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class HistorySearchBackward implements Function {
+
+  @Override
+  public String name() {
+    return "history-search-backward";
+  }
+
+  @Override
+  public void apply(Readline.Interaction interaction) {
+    History history = interaction.lineHistory();
+    int[] current = interaction.buffer().toArray();
+    int[] prefix = Arrays.copyOf(current, interaction.buffer().getCursor());
+    int curr = interaction.getHistoryIndex();
+    int next = history.searchPrefix(prefix, curr + 1);
+    while (next != -1 && Arrays.equals(history.get(next), current)) {
+      next = history.searchPrefix(prefix, next + 1);
+    }
+    if (next != -1) {
+      if (curr == -1) {
+        interaction.data().put("abc", current);
+      }
+      interaction.refresh(new LineBuffer().insert(history.get(next)).setCursor(prefix.length));
+      interaction.setHistoryIndex(next);
+    }
+    interaction.resume();
+  }
+}
@@ -17,11 +17,10 @@
 package io.termd.core.readline.functions;
 
 import io.termd.core.readline.Function;
+import io.termd.core.readline.History;
 import io.termd.core.readline.LineBuffer;
 import io.termd.core.readline.Readline;
 
-import java.util.List;
-
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
@@ -34,7 +33,7 @@ public class NextHistory implements Function {
 
   @Override
   public void apply(Readline.Interaction interaction) {
-    List<int[]> history = interaction.history();
+    History history = interaction.lineHistory();
     int curr = interaction.getHistoryIndex();
     if (curr >= 0) {
       int next = curr - 1;
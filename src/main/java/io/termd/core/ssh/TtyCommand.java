@@ -22,9 +22,9 @@ import io.termd.core.tty.TtyConnection;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
 import io.termd.core.tty.TtyOutputMode;
+import io.termd.core.tty.TtyOutputQueue;
+import io.termd.core.util.Logging;
 import io.termd.core.util.Vector;
-import org.apache.sshd.common.io.IoWriteFuture;
-import org.apache.sshd.common.io.WritePendingException;
 import org.apache.sshd.common.channel.PtyMode;
 import org.apache.sshd.common.io.IoInputStream;
 import org.apache.sshd.common.io.IoOutputStream;
@@ -36,14 +36,15 @@ import org.apache.sshd.server.ExitCallback;
 import org.apache.sshd.server.channel.ChannelDataReceiver;
 import org.apache.sshd.server.channel.ChannelSession;
 
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.EnumSet;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
@@ -54,6 +55,16 @@ import java.util.regex.Pattern;
 */
 public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSessionAware {
 
+  /**
+   * The default low water mark of the output buffered by the SSH channel.
+   */
+  public static final int DEFAULT_LOW_WATER_MARK = 32 * 1024;
+
+  /**
+   * The default high water mark of the output buffered by the SSH channel.
+   */
+  public static final int DEFAULT_HIGH_WATER_MARK = 64 * 1024;
+
   private static final Pattern LC_PATTERN = Pattern.compile("(?:\\p{Alpha}{2}_\\p{Alpha}{2}\\.)?([^@]+)(?:@.+)?");
 
   private final Consumer<TtyConnection> handler;
@@ -62,8 +73,8 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   private String term;
   private TtyEventDecoder eventDecoder;
   private BinaryDecoder decoder;
-  private Consumer<int[]> stdout;
-  private Consumer<byte[]> out;
+  private BinaryEncoder encoder;
+  private TtyOutputQueue stdout;
   private Vector size = null;
   private Consumer<Vector> sizeHandler;
   private Consumer<String> termHandler;
@@ -74,12 +85,48 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   private Connection conn;
   private IoOutputStream ioOut;
   private long lastAccessedTime = System.currentTimeMillis();
+  private int lowWaterMark = DEFAULT_LOW_WATER_MARK;
+  private int highWaterMark = DEFAULT_HIGH_WATER_MARK;
+  private final AtomicLong pendingBytes = new AtomicLong();
+  private final AtomicBoolean writable = new AtomicBoolean(true);
+  private volatile Consumer<Boolean> writabilityHandler;
+  private final Object outputLock = new Object();
+  private ByteArrayBuffer pendingOutput; // Guarded by outputLock
+  private boolean writing;               // Guarded by outputLock
+  private Runnable drainedTask;          // Guarded by outputLock
+  private boolean failed;                // Guarded by outputLock
 
   public TtyCommand(Charset defaultCharset, Consumer<TtyConnection> handler) {
     this.handler = handler;
     this.defaultCharset = defaultCharset;
   }
 
+  public int getLowWaterMark() {
+    return lowWaterMark;
+  }
+
+  public int getHighWaterMark() {
+    return highWaterMark;
+  }
+
+  /**
+   * Set the water marks of the output buffered by the SSH channel: the output written to the channel is pending
+   * until the client window allows to send it, the connection becomes not writable when the pending output
+   * exceeds the high water mark and writable again when it drops below the low water mark.
+   *
+   * @param lowWaterMark the low water mark in bytes
+   * @param highWaterMark the high water mark in bytes
+   * @return this object
+   */
+  public TtyCommand setWriteBufferWaterMark(int lowWaterMark, int highWaterMark) {
+    if (lowWaterMark < 0 || highWaterMark < lowWaterMark) {
+      throw new IllegalArgumentException("Invalid water marks " + lowWaterMark + "/" + highWaterMark);
+    }
+    this.lowWaterMark = lowWaterMark;
+    this.highWaterMark = highWaterMark;
+    return this;
+  }
+
   @Override
   public int data(ChannelSession channel, byte[] buf, int start, int len) throws IOException {
     if (decoder != null) {
@@ -116,21 +163,136 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   @Override
   public void setIoOutputStream(IoOutputStream out) {
     this.ioOut = out;
-    this.out = bytes -> {
-      ByteArrayBuffer byteArrayBuffer = new ByteArrayBuffer(bytes);
-      // the loop is only needed if we catch a WritePendingException, to retry the write and clear the buffer
-      while (byteArrayBuffer.available() > 0) {
-        try {
-          IoWriteFuture ioWriteFuture = out.writeBuffer(byteArrayBuffer);
-          // await the write so that we do not lose bytes
-          ioWriteFuture.verify(1, TimeUnit.SECONDS); 
-        } catch (WritePendingException | EOFException ignored) {
-         // WritePendingException is only cought if the verify() method timeouts
-        } catch (IOException e) {
-          throw new RuntimeException(e);
+  }
+
+  /**
+   * Encode code points to the SSH channel without blocking: when a write is in flight the encoded bytes are
+   * appended to the pending output that is written at once when the write completes.
+   */
+  private void write(int[] codePoints) {
+    int max = encoder.maxEncodedLength(codePoints, 0, codePoints.length);
+    int length;
+    ByteArrayBuffer buffer = null;
+    synchronized (outputLock) {
+      if (failed) {
+        // The output is discarded after a write failure
+        return;
+      }
+      if (pendingOutput == null) {
+        pendingOutput = new ByteArrayBuffer(Math.max(max, 256), false);
+      } else {
+        pendingOutput.ensureCapacity(max);
+      }
+      int wpos = pendingOutput.wpos();
+      byte[] array = pendingOutput.array();
+      ByteBuffer bBuf = ByteBuffer.wrap(array, wpos, array.length - wpos);
+      encoder.encode(codePoints, 0, codePoints.length, bBuf);
+      pendingOutput.wpos(bBuf.position());
+      length = bBuf.position() - wpos;
+      if (!writing) {
+        writing = true;
+        buffer = pendingOutput;
+        pendingOutput = null;
+      }
+    }
+    pendingBytes(length);
+    if (buffer != null) {
+      send(buffer);
+    }
+  }
+
+  private void send(ByteArrayBuffer buffer) {
+    int length = buffer.available();
+    try {
+      ioOut.writeBuffer(buffer).addListener(future -> {
+        if (future.isWritten()) {
+          onWritten(length);
+        } else {
+          onWriteFailed(future.getException());
         }
+      });
+    } catch (IOException e) {
+      // Channel closed
+      onWriteFailed(e);
+    }
+  }
+
+  /**
+   * Discard the pending output and close the command.
+   */
+  private void onWriteFailed(Throwable cause) {
+    Logging.logReportedIoError(cause);
+    Runnable task;
+    synchronized (outputLock) {
+      failed = true;
+      writing = false;
+      pendingOutput = null;
+      task = drainedTask;
+      drainedTask = null;
+    }
+    pendingBytes(-pendingBytes.get());
+    if (task == null) {
+      try {
+        close(0);
+      } catch (IOException ignore) {
+      }
+    } else {
+      // A close was waiting for the output
+      task.run();
+    }
+  }
+
+  private void onWritten(int length) {
+    pendingBytes(-length);
+    ByteArrayBuffer next;
+    Runnable task = null;
+    synchronized (outputLock) {
+      next = pendingOutput;
+      pendingOutput = null;
+      if (next == null) {
+        writing = false;
+        task = drainedTask;
+        drainedTask = null;
       }
-    };
+    }
+    if (next != null) {
+      send(next);
+    } else if (task != null) {
+      task.run();
+    }
+  }
+
+  /**
+   * Run a task once the pending output has been written.
+   */
+  private void whenDrained(Runnable task) {
+    synchronized (outputLock) {
+      if (writing) {
+        drainedTask = task;
+        return;
+      }
+    }
+    task.run();
+  }
+
+  private void pendingBytes(long delta) {
+    long pending = pendingBytes.addAndGet(delta);
+    if (pending > highWaterMark) {
+      if (writable.compareAndSet(true, false)) {
+        writabilityChanged(false);
+      }
+    } else if (pending < lowWaterMark) {
+      if (writable.compareAndSet(false, true)) {
+        writabilityChanged(true);
+      }
+    }
+  }
+
+  private void writabilityChanged(boolean writable) {
+    Consumer<Boolean> handler = writabilityHandler;
+    if (handler != null) {
+      handler.accept(writable);
+    }
   }
 
   @Override
@@ -163,7 +325,8 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
     //
     eventDecoder = new TtyEventDecoder(vintr, vsusp, veof);
     decoder = new BinaryDecoder(512, charset, eventDecoder);
-    stdout = new TtyOutputMode(new BinaryEncoder(charset, out));
+    encoder = new BinaryEncoder(charset);
+    stdout = new TtyOutputQueue(this::execute, new TtyOutputMode(this::write));
     term = env.getEnv().get("TERM");
     conn = new Connection();
 
@@ -205,7 +368,7 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
   }
 
   private void close(int exit) throws IOException {
-    ioOut.close(false).addListener(future -> {
+    whenDrained(() -> ioOut.close(false).addListener(future -> {
       exitCallback.onExit(exit);
       if (closed.compareAndSet(false, true)) {
         if (closeHandler != null) {
@@ -214,7 +377,7 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
           // This happen : report it to the SSHD project
         }
       }
-    });
+    }));
   }
 
   @Override
@@ -324,6 +487,21 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
       TtyCommand.this.schedule(task, delay, unit);
     }
 
+    @Override
+    public boolean isWritable() {
+      return writable.get();
+    }
+
+    @Override
+    public Consumer<Boolean> getWritabilityHandler() {
+      return writabilityHandler;
+    }
+
+    @Override
+    public void setWritabilityHandler(Consumer<Boolean> handler) {
+      writabilityHandler = handler;
+    }
+
     @Override
     public void setCloseHandler(Consumer<Void> handler) {
       closeHandler = handler;
@@ -336,18 +514,17 @@ public class TtyCommand implements AsyncCommand, ChannelDataReceiver, ChannelSes
 
     @Override
     public void close() {
-      try {
-        TtyCommand.this.close();
-      } catch (IOException ignore) {
-      }
+      close(0);
     }
 
     @Override
     public void close(int exit) {
-      try {
-        TtyCommand.this.close(exit);
-      } catch (IOException ignore) {
-      }
+      stdout.execute(() -> {
+        try {
+          TtyCommand.this.close(exit);
+        } catch (IOException ignore) {
+        }
+      });
     }
   }
 }
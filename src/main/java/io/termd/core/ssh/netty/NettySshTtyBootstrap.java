@@ -17,6 +17,7 @@
 package io.termd.core.ssh.netty;
 
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.termd.core.ssh.TtyCommand;
 import io.termd.core.tty.TtyConnection;
@@ -47,6 +48,7 @@ public class NettySshTtyBootstrap {
   private SshServer server;
   private KeyPairProvider keyPairProvider;
   private PasswordAuthenticator passwordAuthenticator;
+  private WriteBufferWaterMark writeBufferWaterMark;
 
   public NettySshTtyBootstrap() {
     this.host = "localhost";
@@ -56,6 +58,7 @@ public class NettySshTtyBootstrap {
     this.childGroup = new NioEventLoopGroup();
     this.keyPairProvider = new SimpleGeneratorHostKeyProvider(new File("hostkey.ser").toPath());
     this.passwordAuthenticator = (username, password, session) -> true;
+    this.writeBufferWaterMark = new WriteBufferWaterMark(TtyCommand.DEFAULT_LOW_WATER_MARK, TtyCommand.DEFAULT_HIGH_WATER_MARK);
   }
 
   public String getHost() {
@@ -99,6 +102,23 @@ public class NettySshTtyBootstrap {
     this.charset = charset;
   }
 
+  public WriteBufferWaterMark getWriteBufferWaterMark() {
+    return writeBufferWaterMark;
+  }
+
+  /**
+   * Set the low and high water marks of the output pending on the SSH channel of a connection, a connection becomes
+   * not writable when its pending output exceeds the high water mark and writable again when it drops below the
+   * low water mark.
+   *
+   * @param writeBufferWaterMark the water marks
+   * @return this object
+   */
+  public NettySshTtyBootstrap setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+    this.writeBufferWaterMark = writeBufferWaterMark;
+    return this;
+  }
+
   public void start(Consumer<TtyConnection> factory, Consumer<Throwable> doneHandler) {
     server = SshServer.setUpDefaultServer();
     server.setIoServiceFactoryFactory(new NettyIoServiceFactoryFactory(childGroup));
@@ -106,7 +126,8 @@ public class NettySshTtyBootstrap {
     server.setHost(host);
     server.setKeyPairProvider(keyPairProvider);
     server.setPasswordAuthenticator(passwordAuthenticator);
-    server.setShellFactory(channelSession -> new TtyCommand(charset, factory));
+    server.setShellFactory(channelSession -> new TtyCommand(charset, factory)
+        .setWriteBufferWaterMark(writeBufferWaterMark.low(), writeBufferWaterMark.high()));
     try {
       server.start();
     } catch (Exception e) {
@@ -15,6 +15,7 @@
  */
 package io.termd.core.telnet;
 
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
@@ -31,8 +32,6 @@ public abstract class TelnetConnection {
   public static final byte BYTE_SB = (byte)   0xFA;
   public static final byte BYTE_SE = (byte)   0xF0;
 
-  private byte[] pendingBuffer = new byte[256];
-  private int pendingLength = 0;
   Status status;
   Byte paramsOptionCode;
   byte[] paramsBuffer;
@@ -83,29 +82,131 @@ public abstract class TelnetConnection {
     send(new byte[]{BYTE_IAC, BYTE_WILL, option.code});
   }
 
-  private void rawWrite(byte[] data, int offset, int length) {
-    if (length > 0) {
-      if (offset == 0 && length == data.length) {
-        send(data);
-      } else {
-        byte[] chunk = new byte[length];
-        System.arraycopy(data, offset, chunk, 0, chunk.length);
-        send(chunk);
-      }
-    }
-  }
-
   protected abstract void execute(Runnable task);
 
+  /**
+   * @return true when the current thread is the connection executor, the default implementation returns false
+   */
+  protected boolean inExecutor() {
+    return false;
+  }
+
   protected abstract void schedule(Runnable task, long delay, TimeUnit unit);
 
   protected abstract void send(byte[] data);
 
+  /**
+   * Send a range of bytes to the client, the caller may reuse the array once the method returns. The default
+   * implementation calls {@link #send(byte[])} with a copy of the range.
+   *
+   * @param data the data
+   * @param offset the range offset
+   * @param length the range length
+   */
+  protected void send(byte[] data, int offset, int length) {
+    byte[] chunk = new byte[length];
+    System.arraycopy(data, offset, chunk, 0, chunk.length);
+    send(chunk);
+  }
+
+  /**
+   * Send a range of bytes to the client, doubling its IAC bytes. The default implementation escapes the
+   * range to a single array and calls {@link #send(byte[])}.
+   *
+   * @param data the data
+   * @param offset the range offset
+   * @param length the range length
+   * @param escapedLength the length of the escaped range
+   */
+  protected void sendEscaped(byte[] data, int offset, int length, int escapedLength) {
+    byte[] escaped = new byte[escapedLength];
+    escape(data, offset, length, ByteBuffer.wrap(escaped));
+    send(escaped);
+  }
+
+  /**
+   * Copy a range of bytes to a buffer, doubling its IAC bytes.
+   *
+   * @param data the data
+   * @param offset the range offset
+   * @param length the range length
+   * @param dst the destination buffer
+   */
+  protected static void escape(byte[] data, int offset, int length, ByteBuffer dst) {
+    int prev = offset;
+    int end = offset + length;
+    for (int i = offset;i < end;i++) {
+      if (data[i] == BYTE_IAC) {
+        dst.put(data, prev, i + 1 - prev);
+        dst.put(BYTE_IAC);
+        prev = i + 1;
+      }
+    }
+    dst.put(data, prev, end - prev);
+  }
+
   public void receive(byte[] data) {
-    for (byte b : data) {
-      status.handle(this, b);
+    receive(ByteBuffer.wrap(data));
+  }
+
+  /**
+   * Receive the remaining bytes of a buffer sent by the client. The runs of data between IAC bytes are
+   * passed to {@link TelnetHandler#onData(ByteBuffer)} as views of the buffer, without copying.
+   *
+   * @param data the buffer
+   */
+  public void receive(ByteBuffer data) {
+    int pos = data.position();
+    int limit = data.limit();
+    while (pos < limit) {
+      int from;
+      if (status == Status.DATA) {
+        from = pos;
+      } else if (status == Status.ESC && data.get(pos) == BYTE_IAC) {
+        // An escaped IAC starts the next run of data
+        status = Status.DATA;
+        from = pos++;
+      } else {
+        status.handle(this, data.get(pos++));
+        continue;
+      }
+      int iac = indexOfIac(data, pos, limit);
+      if (iac > from) {
+        data.limit(iac);
+        data.position(from);
+        try {
+          handler.onData(data);
+        } finally {
+          data.limit(limit);
+        }
+      }
+      if (iac < limit) {
+        status.handle(this, BYTE_IAC);
+        pos = iac + 1;
+      } else {
+        pos = limit;
+      }
+    }
+    data.position(limit);
+  }
+
+  private static int indexOfIac(ByteBuffer data, int from, int to) {
+    if (data.hasArray()) {
+      byte[] array = data.array();
+      int offset = data.arrayOffset();
+      for (int i = from + offset;i < to + offset;i++) {
+        if (array[i] == BYTE_IAC) {
+          return i - offset;
+        }
+      }
+    } else {
+      for (int i = from;i < to;i++) {
+        if (data.get(i) == BYTE_IAC) {
+          return i;
+        }
+      }
     }
-    flushDataIfNecessary();
+    return to;
   }
 
 
@@ -116,21 +217,40 @@ public abstract class TelnetConnection {
    * @param data the data to write
    */
   public final void write(byte[] data) {
+    write(data, 0, data.length);
+  }
+
+  /**
+   * Write a range of data to the client, escaping data if necessary or truncating it. The original buffer can
+   * be mutated if incorrect data is provided.<p>
+   *
+   * In binary mode the escaped data is sent at once.
+   *
+   * @param data the data to write
+   * @param offset the range offset
+   * @param length the range length
+   */
+  public final void write(byte[] data, int offset, int length) {
+    if (length == 0) {
+      return;
+    }
     if (sendBinary) {
-      int prev = 0;
-      for (int i = 0;i < data.length;i++) {
-        if (data[i] == -1) {
-          rawWrite(data, prev, i - prev);
-          send(new byte[]{-1, -1});
-          prev = i + 1;
+      int escapedLength = length;
+      for (int i = offset;i < offset + length;i++) {
+        if (data[i] == BYTE_IAC) {
+          escapedLength++;
         }
       }
-      rawWrite(data, prev, data.length - prev);
+      if (escapedLength == length) {
+        send(data, offset, length);
+      } else {
+        sendEscaped(data, offset, length, escapedLength);
+      }
     } else {
-      for (int i = 0;i < data.length;i++) {
+      for (int i = offset;i < offset + length;i++) {
         data[i] = (byte)(data[i] & 0x7F);
       }
-      send(data);
+      send(data, offset, length);
     }
   }
 
@@ -138,6 +258,22 @@ public abstract class TelnetConnection {
     handler.onClose();
   }
 
+  /**
+   * @return true when the data sent to the client is not buffered beyond the transport high water mark
+   */
+  public boolean isWritable() {
+    return true;
+  }
+
+  /**
+   * Signal the writability of the transport changed.
+   *
+   * @param writable the new writability
+   */
+  public void onWritabilityChanged(boolean writable) {
+    handler.onWritabilityChanged(writable);
+  }
+
   /**
    * Handle option <code>WILL</code> call back. The implementation will try to find a matching option
    * via the {@code Option#values()} and invoke it's {@link Option#handleWill(TelnetConnection)} method
@@ -227,67 +363,21 @@ public abstract class TelnetConnection {
     }
   }
 
-  /**
-   * Append a byte in the {@link #pendingBuffer} buffer. When the {@link #pendingBuffer} buffer is full, data
-   * is flushed.
-   *
-   * @param b the byte
-   * @see #flushData()
-   */
-  private void appendData(byte b) {
-    if (pendingLength >= pendingBuffer.length) {
-      flushData();
-    }
-    pendingBuffer[pendingLength++] = b;
-  }
-
-  /**
-   * Flush the {@link #pendingBuffer} buffer when it is not empty.
-   *
-   * @see #flushData()
-   */
-  private void flushDataIfNecessary() {
-    if (pendingLength > 0) {
-      flushData();
-    }
-  }
-
-  /**
-   * Flush the {@link #pendingBuffer} buffer to {@link TelnetHandler#onData(byte[])}.
-   */
-  private void flushData() {
-    byte[] data = Arrays.copyOf(pendingBuffer, pendingLength);
-    pendingLength = 0;
-    handler.onData(data);
-  }
-
   enum Status {
 
+    // The runs of data and the escaped IAC bytes are handled by receive, the DATA and ESC states only handle
+    // the IAC byte and the byte following it
     DATA() {
       @Override
       void handle(TelnetConnection session, byte b) {
-        if (b == BYTE_IAC) {
-          if (session.receiveBinary) {
-            session.status = ESC;
-          } else {
-            session.flushDataIfNecessary();
-            session.status = IAC;
-          }
-        } else {
-          session.appendData(b);
-        }
+        session.status = session.receiveBinary ? ESC : IAC;
       }
     },
 
     ESC() {
       @Override
       void handle(TelnetConnection session, byte b) {
-        if (b == BYTE_IAC) {
-          session.appendData((byte)-1);
-        } else {
-          session.flushDataIfNecessary();
-          IAC.handle(session, b);
-        }
+        IAC.handle(session, b);
       }
     },
 
@@ -20,12 +20,14 @@ import io.termd.core.tty.ReadBuffer;
 import io.termd.core.tty.TtyEvent;
 import io.termd.core.tty.TtyEventDecoder;
 import io.termd.core.tty.TtyOutputMode;
+import io.termd.core.tty.TtyOutputQueue;
 import io.termd.core.util.Vector;
 import io.termd.core.io.BinaryDecoder;
 import io.termd.core.io.BinaryEncoder;
 import io.termd.core.io.TelnetCharset;
 import io.termd.core.tty.TtyConnection;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.concurrent.TimeUnit;
@@ -49,13 +51,15 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
   private Consumer<Vector> sizeHandler;
   private Consumer<String> termHandler;
   private Consumer<Void> closeHandler;
+  private Consumer<Boolean> writabilityHandler;
   protected TelnetConnection conn;
   private final Charset charset;
   private final TtyEventDecoder eventDecoder = new TtyEventDecoder(3, 26, 4);
   private final ReadBuffer readBuffer = new ReadBuffer(this::execute);
   private final BinaryDecoder decoder = new BinaryDecoder(512, TelnetCharset.INSTANCE, readBuffer);
-  private final BinaryEncoder encoder = new BinaryEncoder(StandardCharsets.US_ASCII, data -> conn.write(data));
-  private final Consumer<int[]> stdout = new TtyOutputMode(encoder);
+  private final BinaryEncoder encoder = new BinaryEncoder(StandardCharsets.US_ASCII);
+  private ByteBuffer encoded = ByteBuffer.allocate(512);
+  private final TtyOutputQueue stdout = new TtyOutputQueue(this::execute, () -> conn.inExecutor(), new TtyOutputMode(this::write));
   private final Consumer<TtyConnection> handler;
   private long lastAccessedTime = System.currentTimeMillis();
 
@@ -120,6 +124,12 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     decoder.write(data);
   }
 
+  @Override
+  protected void onData(ByteBuffer data) {
+    lastAccessedTime = System.currentTimeMillis();
+    decoder.write(data);
+  }
+
   @Override
   protected void onOpen(TelnetConnection conn) {
     this.conn = conn;
@@ -146,6 +156,16 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     checkAccept();
   }
 
+  private void write(int[] codePoints) {
+    int max = encoder.maxEncodedLength(codePoints, 0, codePoints.length);
+    if (max > encoded.capacity()) {
+      encoded = ByteBuffer.allocate(Math.max(max, encoded.capacity() * 2));
+    }
+    encoded.clear();
+    encoder.encode(codePoints, 0, codePoints.length, encoded);
+    conn.write(encoded.array(), 0, encoded.position());
+  }
+
   private void checkAccept() {
     if (!accepted) {
       if (!outBinary | (outBinary && sendingBinary)) {
@@ -227,6 +247,29 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
     return stdout;
   }
 
+  @Override
+  public boolean isWritable() {
+    return conn.isWritable();
+  }
+
+  @Override
+  public Consumer<Boolean> getWritabilityHandler() {
+    return writabilityHandler;
+  }
+
+  @Override
+  public void setWritabilityHandler(Consumer<Boolean> handler) {
+    this.writabilityHandler = handler;
+  }
+
+  @Override
+  protected void onWritabilityChanged(boolean writable) {
+    Consumer<Boolean> handler = writabilityHandler;
+    if (handler != null) {
+      handler.accept(writable);
+    }
+  }
+
   @Override
   public void setCloseHandler(Consumer<Void> closeHandler) {
     this.closeHandler = closeHandler;
@@ -246,6 +289,6 @@ public final class TelnetTtyConnection extends TelnetHandler implements TtyConne
 
   @Override
   public void close() {
-    conn.close();
+    stdout.execute(conn::close);
   }
 }
@@ -21,6 +21,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
@@ -44,6 +45,9 @@ public class NettyTelnetBootstrap extends TelnetBootstrap {
 
   private EventLoopGroup group;
   private ChannelGroup channelGroup;
+  private long flushMaxLatency;
+  private int flushThreshold = NettyTelnetConnection.DEFAULT_FLUSH_THRESHOLD;
+  private WriteBufferWaterMark writeBufferWaterMark = WriteBufferWaterMark.DEFAULT;
 
   public NettyTelnetBootstrap() {
     this.group = new NioEventLoopGroup();
@@ -58,6 +62,53 @@ public class NettyTelnetBootstrap extends TelnetBootstrap {
     return (NettyTelnetBootstrap) super.setPort(port);
   }
 
+  public long getFlushMaxLatency() {
+    return flushMaxLatency;
+  }
+
+  /**
+   * Set the max time in milliseconds the output of a connection is buffered before being flushed, the default
+   * value {@code 0} coalesces the output written during an event loop tick.
+   *
+   * @param flushMaxLatency the max latency in milliseconds
+   * @return this object
+   */
+  public NettyTelnetBootstrap setFlushMaxLatency(long flushMaxLatency) {
+    this.flushMaxLatency = flushMaxLatency;
+    return this;
+  }
+
+  public int getFlushThreshold() {
+    return flushThreshold;
+  }
+
+  /**
+   * Set the number of buffered output bytes of a connection that triggers an immediate flush.
+   *
+   * @param flushThreshold the threshold in bytes
+   * @return this object
+   */
+  public NettyTelnetBootstrap setFlushThreshold(int flushThreshold) {
+    this.flushThreshold = flushThreshold;
+    return this;
+  }
+
+  public WriteBufferWaterMark getWriteBufferWaterMark() {
+    return writeBufferWaterMark;
+  }
+
+  /**
+   * Set the low and high water marks of the connection output buffer, a connection becomes not writable when
+   * its buffered output exceeds the high water mark and writable again when it drops below the low water mark.
+   *
+   * @param writeBufferWaterMark the water marks
+   * @return this object
+   */
+  public NettyTelnetBootstrap setWriteBufferWaterMark(WriteBufferWaterMark writeBufferWaterMark) {
+    this.writeBufferWaterMark = writeBufferWaterMark;
+    return this;
+  }
+
   @Override
   public void start(Supplier<TelnetHandler> factory, Consumer<Throwable> doneHandler) {
     ServerBootstrap boostrap = new ServerBootstrap();
@@ -65,12 +116,13 @@ public class NettyTelnetBootstrap extends TelnetBootstrap {
         .channel(NioServerSocketChannel.class)
         .option(ChannelOption.SO_BACKLOG, 100)
         .handler(new LoggingHandler(LogLevel.INFO))
+        .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, writeBufferWaterMark)
         .childHandler(new ChannelInitializer<SocketChannel>() {
           @Override
           public void initChannel(SocketChannel ch) throws Exception {
             channelGroup.add(ch);
             ChannelPipeline p = ch.pipeline();
-            TelnetChannelHandler handler = new TelnetChannelHandler(factory);
+            TelnetChannelHandler handler = new TelnetChannelHandler(factory, flushMaxLatency, flushThreshold);
             p.addLast(handler);
           }
         });
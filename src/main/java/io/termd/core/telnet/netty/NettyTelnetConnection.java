@@ -16,6 +16,7 @@
 
 package io.termd.core.telnet.netty;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
@@ -29,11 +30,37 @@ import java.util.concurrent.TimeUnit;
  */
 public class NettyTelnetConnection extends TelnetConnection {
 
+  /**
+   * The default number of buffered bytes that triggers a flush.
+   */
+  public static final int DEFAULT_FLUSH_THRESHOLD = 8192;
+
   final ChannelHandlerContext context;
+  private final long flushMaxLatency;
+  private final int flushThreshold;
+  private final Runnable flushTask = this::flush;
+  private ByteBuf pending;
+  private boolean flushScheduled;
 
   public NettyTelnetConnection(TelnetHandler handler, ChannelHandlerContext context) {
+    this(handler, context, 0, DEFAULT_FLUSH_THRESHOLD);
+  }
+
+  /**
+   * Create a connection that coalesces the data sent during an event loop tick in a single buffer and flushes it
+   * once.
+   *
+   * @param handler the handler
+   * @param context the channel handler context
+   * @param flushMaxLatency the max time in milliseconds the data is buffered, {@code 0} flushes at the end of the
+   *                        current event loop tick
+   * @param flushThreshold the number of buffered bytes that triggers an immediate flush
+   */
+  public NettyTelnetConnection(TelnetHandler handler, ChannelHandlerContext context, long flushMaxLatency, int flushThreshold) {
     super(handler);
     this.context = context;
+    this.flushMaxLatency = flushMaxLatency;
+    this.flushThreshold = flushThreshold;
   }
 
   @Override
@@ -41,24 +68,112 @@ public class NettyTelnetConnection extends TelnetConnection {
     context.channel().eventLoop().execute(task);
   }
 
+  @Override
+  protected boolean inExecutor() {
+    return context.channel().eventLoop().inEventLoop();
+  }
+
   @Override
   protected void schedule(Runnable task, long delay, TimeUnit unit) {
     context.channel().eventLoop().schedule(task, delay, unit);
   }
 
-  // Not properly synchronized, but ok for now
   @Override
   protected void send(byte[] data) {
-    context.writeAndFlush(Unpooled.buffer().writeBytes(data));
+    send(data, 0, data.length);
+  }
+
+  @Override
+  protected void send(byte[] data, int offset, int length) {
+    if (context.channel().eventLoop().inEventLoop()) {
+      pending(length).writeBytes(data, offset, length);
+      scheduleFlush();
+    } else {
+      ByteBuf copy = context.alloc().buffer(length).writeBytes(data, offset, length);
+      execute(() -> append(copy));
+    }
+  }
+
+  @Override
+  protected void sendEscaped(byte[] data, int offset, int length, int escapedLength) {
+    if (context.channel().eventLoop().inEventLoop()) {
+      ByteBuf buf = pending(escapedLength);
+      int index = buf.writerIndex();
+      escape(data, offset, length, buf.nioBuffer(index, escapedLength));
+      buf.writerIndex(index + escapedLength);
+      scheduleFlush();
+    } else {
+      ByteBuf copy = context.alloc().buffer(escapedLength);
+      escape(data, offset, length, copy.nioBuffer(0, escapedLength));
+      copy.writerIndex(escapedLength);
+      execute(() -> append(copy));
+    }
+  }
+
+  private ByteBuf pending(int length) {
+    if (pending == null) {
+      pending = context.alloc().buffer(Math.max(length, 256));
+    } else {
+      pending.ensureWritable(length);
+    }
+    return pending;
+  }
+
+  private void append(ByteBuf data) {
+    try {
+      pending(data.readableBytes()).writeBytes(data);
+    } finally {
+      data.release();
+    }
+    scheduleFlush();
+  }
+
+  private void scheduleFlush() {
+    if (pending.readableBytes() >= flushThreshold) {
+      flush();
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      if (flushMaxLatency > 0) {
+        schedule(flushTask, flushMaxLatency, TimeUnit.MILLISECONDS);
+      } else {
+        execute(flushTask);
+      }
+    }
+  }
+
+  /**
+   * Flush the buffered data, this must be called from the event loop.
+   */
+  void flush() {
+    flushScheduled = false;
+    if (pending != null) {
+      ByteBuf buf = pending;
+      pending = null;
+      context.writeAndFlush(buf);
+    }
+  }
+
+  @Override
+  public boolean isWritable() {
+    return context.channel().isWritable();
   }
 
   @Override
   protected void onClose() {
+    if (pending != null) {
+      pending.release();
+      pending = null;
+    }
     super.onClose();
   }
 
   @Override
   public void close() {
-    context.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    if (context.channel().eventLoop().inEventLoop()) {
+      flush();
+      context.writeAndFlush(Unpooled.EMPTY_BUFFER).addListener(ChannelFutureListener.CLOSE);
+    } else {
+      execute(this::close);
+    }
   }
 }
@@ -32,27 +32,49 @@ import java.util.function.Supplier;
 public class TelnetChannelHandler extends ChannelInboundHandlerAdapter {
 
   private final Supplier<TelnetHandler> factory;
+  private final long flushMaxLatency;
+  private final int flushThreshold;
   private NettyTelnetConnection conn;
 
   public TelnetChannelHandler(Supplier<TelnetHandler> factory) {
+    this(factory, 0, NettyTelnetConnection.DEFAULT_FLUSH_THRESHOLD);
+  }
+
+  /**
+   * @param factory the telnet handler factory
+   * @param flushMaxLatency the max time in milliseconds the output is buffered
+   * @param flushThreshold the number of buffered output bytes that triggers a flush
+   */
+  public TelnetChannelHandler(Supplier<TelnetHandler> factory, long flushMaxLatency, int flushThreshold) {
     this.factory = factory;
+    this.flushMaxLatency = flushMaxLatency;
+    this.flushThreshold = flushThreshold;
   }
 
   @Override
   public void channelRead(ChannelHandlerContext ctx, Object msg) {
     ByteBuf buf = (ByteBuf) msg;
-    int size = buf.readableBytes();
-    byte[] data = new byte[size];
-    buf.getBytes(0, data);
-    conn.receive(data);
+    try {
+      conn.receive(buf.nioBuffer());
+    } finally {
+      buf.release();
+    }
   }
 
   @Override
   public void channelActive(ChannelHandlerContext ctx) throws Exception {
-    this.conn = new NettyTelnetConnection(factory.get(), ctx);
+    this.conn = new NettyTelnetConnection(factory.get(), ctx, flushMaxLatency, flushThreshold);
     conn.onInit();
   }
 
+  @Override
+  public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    if (conn != null) {
+      conn.onWritabilityChanged(ctx.channel().isWritable());
+    }
+    super.channelWritabilityChanged(ctx);
+  }
+
   @Override
   public void channelInactive(ChannelHandlerContext ctx) throws Exception {
     conn.onClose();
@@ -512,6 +512,10 @@ public class Capability<T> {
   public static Capability<Sequence> xon_character = new Enumerated<>(Sequence.class, "xon_character", "xonc", "XN", "X-on character");
   public static Capability<Sequence> zero_motion = new Enumerated<>(Sequence.class, "zero_motion", "zerom", "Zx", "No motion for the subsequent character");
 
+  // Extended capabilities of ncurses user_caps(5)
+  public static Capability<Sequence> enter_bracketed_paste = new Enumerated<>(Sequence.class, "enter_bracketed_paste", "BE", null, "Enable bracketed paste mode");
+  public static Capability<Sequence> exit_bracketed_paste = new Enumerated<>(Sequence.class, "exit_bracketed_paste", "BD", null, "Disable bracketed paste mode");
+
   public final Class<T> type;
   public final String variable;
   public final String name;
@@ -83,10 +83,39 @@ public interface TtyConnection {
   void setStdinHandler(Consumer<int[]> handler);
 
   /**
-   * @return the stdout handler of this connection
+   * @return the stdout handler of this connection, it can be called from any thread
    */
   Consumer<int[]> stdoutHandler();
 
+  /**
+   * Returns true when the output written to the {@link #stdoutHandler()} can be sent to the client, false when
+   * the output buffered by the connection reached its high water mark. A producer should stop writing until
+   * the connection becomes writable again, i.e the buffered output dropped below the low water mark.
+   *
+   * The default implementation returns true, it is meant for connections that never buffer output.
+   *
+   * @return the connection writability
+   */
+  default boolean isWritable() {
+    return true;
+  }
+
+  /**
+   * @return the writability handler
+   */
+  default Consumer<Boolean> getWritabilityHandler() {
+    return null;
+  }
+
+  /**
+   * Set an handler called with the new writability when the writability of the connection changes, the
+   * handler can be called from any thread.
+   *
+   * @param handler the handler
+   */
+  default void setWritabilityHandler(Consumer<Boolean> handler) {
+  }
+
   void setCloseHandler(Consumer<Void> closeHandler);
 
   Consumer<Void> getCloseHandler();
@@ -16,13 +16,16 @@
 
 package io.termd.core.tty;
 
+import io.termd.core.io.CodePointSink;
+
+import java.util.Arrays;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
-public class TtyEventDecoder implements Consumer<int[]> {
+public class TtyEventDecoder implements CodePointSink {
 
   private Consumer<int[]> readHandler;
   private BiConsumer<TtyEvent, Integer> eventHandler;
@@ -56,9 +59,27 @@ public class TtyEventDecoder implements Consumer<int[]> {
 
   @Override
   public void accept(int[] data) {
+    decode(data, 0, data.length, true);
+  }
+
+  @Override
+  public void accept(int[] buf, int off, int len) {
+    decode(buf, off, len, false);
+  }
+
+  /**
+   * Decode the events from a slice of code points, the read handler receives the code points between events.
+   *
+   * @param data the code points
+   * @param off the slice offset
+   * @param len the slice length
+   * @param owned true when the array can be handed as is to the read handler
+   */
+  private void decode(int[] data, int off, int len, boolean owned) {
+    int end = off + len;
     if (eventHandler != null) {
-      int index = 0;
-      while (index < data.length) {
+      int index = off;
+      while (index < end) {
         int val = data[index];
         TtyEvent event = null;
         if (val == vintr) {
@@ -68,28 +89,22 @@ public class TtyEventDecoder implements Consumer<int[]> {
         } else if (val == veof) {
           event = TtyEvent.EOF;
         }
-        if (event != null) {
-          if (eventHandler != null) {
-            if (readHandler != null) {
-              int[] a = new int[index];
-              if (index > 0) {
-                System.arraycopy(data, 0, a, 0, index);
-                readHandler.accept(a);
-              }
-            }
-            eventHandler.accept(event, val);
-            int[] a = new int[data.length - index - 1];
-            System.arraycopy(data, index + 1, a, 0, a.length);
-            data = a;
-            index = 0;
-            continue;
+        if (event != null && eventHandler != null) {
+          if (readHandler != null && index > off) {
+            readHandler.accept(Arrays.copyOfRange(data, off, index));
           }
+          eventHandler.accept(event, val);
+          off = index + 1;
         }
         index++;
       }
     }
-    if (readHandler != null && data.length > 0) {
-      readHandler.accept(data);
+    if (readHandler != null && off < end) {
+      if (owned && off == 0 && end == data.length) {
+        readHandler.accept(data);
+      } else {
+        readHandler.accept(Arrays.copyOfRange(data, off, end));
+      }
     }
   }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.termd.core.util.Logging;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * A multi-producer single-consumer output queue in front of a connection stdout.<p>
+ *
+ * Code points can be written from any thread, they are handed to the connection stdout on the connection
+ * executor in the order they were written. The queue is lock-free: the producer that makes the queue non empty
+ * schedules a drain task and the drain task keeps running while producers add more code points, so the handler
+ * is never called concurrently even when the executor is a thread pool. Code points queued together are
+ * handed in a single array. When the producer runs on the connection executor and no drain is running, the
+ * queue is drained inline without scheduling a task.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyOutputQueue implements Consumer<int[]> {
+
+  private static final int MAX_BATCH_SIZE = 4096;
+
+  private final Queue<Object> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger pending = new AtomicInteger();
+  private final Executor executor;
+  private final BooleanSupplier inExecutor;
+  private final Consumer<int[]> handler;
+  private final Runnable drainTask = this::drain;
+  private final int[] batch = new int[MAX_BATCH_SIZE]; // Only used by the drain task
+
+  /**
+   * @param executor the connection executor
+   * @param handler the connection stdout
+   */
+  public TtyOutputQueue(Executor executor, Consumer<int[]> handler) {
+    this(executor, () -> false, handler);
+  }
+
+  /**
+   * @param executor the connection executor
+   * @param inExecutor returns true when the current thread is the connection executor
+   * @param handler the connection stdout
+   */
+  public TtyOutputQueue(Executor executor, BooleanSupplier inExecutor, Consumer<int[]> handler) {
+    this.executor = executor;
+    this.inExecutor = inExecutor;
+    this.handler = handler;
+  }
+
+  @Override
+  public void accept(int[] codePoints) {
+    if (codePoints.length > 0) {
+      enqueue(codePoints);
+    }
+  }
+
+  /**
+   * Execute a task on the connection executor once the code points written before have been handed to
+   * the connection stdout.
+   *
+   * @param task the task to execute
+   */
+  public void execute(Runnable task) {
+    enqueue(task);
+  }
+
+  private void enqueue(Object item) {
+    queue.add(item);
+    if (pending.getAndIncrement() == 0) {
+      if (inExecutor.getAsBoolean()) {
+        drain();
+      } else {
+        executor.execute(drainTask);
+      }
+    }
+  }
+
+  private void drain() {
+    int missed = pending.get();
+    while (true) {
+      for (int i = 0;i < missed;) {
+        Object item = queue.poll();
+        i++;
+        if (item instanceof Runnable) {
+          run((Runnable) item);
+        } else {
+          int[] codePoints = (int[]) item;
+          if (i < missed && codePoints.length < MAX_BATCH_SIZE && queue.peek() instanceof int[]) {
+            int length = codePoints.length;
+            System.arraycopy(codePoints, 0, batch, 0, length);
+            while (i < missed && queue.peek() instanceof int[]) {
+              int[] next = (int[]) queue.peek();
+              if (length + next.length > MAX_BATCH_SIZE) {
+                break;
+              }
+              queue.poll();
+              i++;
+              System.arraycopy(next, 0, batch, length, next.length);
+              length += next.length;
+            }
+            codePoints = Arrays.copyOf(batch, length);
+          }
+          run(codePoints);
+        }
+      }
+      missed = pending.addAndGet(-missed);
+      if (missed == 0) {
+        break;
+      }
+    }
+  }
+
+  private void run(Runnable task) {
+    try {
+      task.run();
+    } catch (Exception e) {
+      Logging.logUndeclaredIoError(e);
+    }
+  }
+
+  private void run(int[] codePoints) {
+    try {
+      handler.accept(codePoints);
+    } catch (Exception e) {
+      Logging.logUndeclaredIoError(e);
+    }
+  }
+}
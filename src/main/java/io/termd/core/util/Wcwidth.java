@@ -132,19 +132,162 @@ public class Wcwidth {
       {0xE0100, 0xE01EF}
   };
 
-  static boolean bisearch(int ucs) {
+  /**
+   * sorted list of non-overlapping intervals of the East Asian Wide (W) and Full-width (F) characters
+   */
+  private static final int[][] WIDE = {
+      {0x1100, 0x115F}, // Hangul Jamo init. consonants
+      {0x2329, 0x232A},
+      {0x2E80, 0x303E}, {0x3040, 0xA4CF}, // CJK ... Yi
+      {0xAC00, 0xD7A3}, // Hangul Syllables
+      {0xF900, 0xFAFF}, // CJK Compatibility Ideographs
+      {0xFE10, 0xFE19}, // Vertical forms
+      {0xFE30, 0xFE6F}, // CJK Compatibility Forms
+      {0xFF00, 0xFF60}, // Fullwidth Forms
+      {0xFFE0, 0xFFE6},
+      {0x20000, 0x2FFFD},
+      {0x30000, 0x3FFFD}
+  };
+
+  // The code points from this limit are computed, it covers the planes up to the Tertiary Ideographic Plane
+  static final int TABLE_LIMIT = 0x40000;
+
+  // Two-stage lookup table generated by WcwidthTableGenerator: the index of the block of each range of 256
+  // code points followed by the distinct blocks, a block packs the 256 widths + 1 on 2 bits in 16 ints
+  private static final char[] BLOCK_INDEX = {
+      0, 1, 1, 2, 3, 4, 5, 6, 1, 7, 8, 9, 10, 11, 12, 13, 14, 15, 1, 16, 1, 1, 1, 17, 18, 19, 20, 21, 1, 22, 1, 1,
+      23, 1, 1, 24, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 25, 26, 27, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 28, 1, 1, 1, 29, 1, 1, 1, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 30, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 26, 26, 31, 1, 1, 32, 33,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 34, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 35, 36, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 37,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26,
+      26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 26, 37,
+  };
+
+  private static final int[] BLOCKS = {
+      0x00000001, 0x00000000, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x2AAAAAAA,
+      0x00000000, 0x00000000, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAA5956A, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0x55555556, 0x55555555, 0x65555555, 0xAAAA6596, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAA55, 0xAAAAA555, 0xAAAAAAAA, 0xAAAAAAAA, 0x556AAAAA, 0x95555555, 0xAAAAAAAA, 0xAAAAAAA9,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x55555AAA, 0xA5596955, 0xAAAAAAAA,
+      0x6AAAAAAA, 0xAAAAAAA6, 0xAAAAAAAA, 0x55555555, 0xAA955555, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0x55555AAA, 0xAAAAAAA9, 0xAAAAAAAA, 0xAAAAAAAA, 0x556AAAAA, 0xAAAAAA55,
+      0xAAAAAA96, 0xAAAAAAAA, 0xAAAAAAAA, 0xA9AAAAAA, 0xA6A95556, 0xAAAAA956, 0xAAAAAA5A, 0xAAAAAAAA,
+      0xAAAAAAA6, 0xAAAAAAAA, 0xAAAAAAAA, 0xA9AAAAAA, 0xA6AAA956, 0xAAAAAAAA, 0xAAAAAA5A, 0xAAAAAAAA,
+      0xAAAAAA96, 0xAAAAAAAA, 0xAAAAAAAA, 0xA9AAAAAA, 0xA5696A96, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAA5,
+      0xAAAAAA96, 0xAAAAAAAA, 0xAAAAAAAA, 0xA9AAAAAA, 0xA6A96556, 0xAAAAAAAA, 0xAAAAAA5A, 0xAAAAAAAA,
+      0xAAAAAAA6, 0xAAAAAAAA, 0xAAAAAAAA, 0x69AAAAAA, 0xA6AAAA56, 0xAAAA9AAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAA9A, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xA6AAAAA9, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x5AAAAAAA, 0xA5595AA9, 0xAAAA96AA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x69AAAAAA, 0xA5AA9AAA, 0xAAAAAAAA, 0xAAAAAA5A, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xA6AAAA56, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAA9AAAAA, 0xAAAA995A, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAA9555A6, 0x95556AAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xA96555A6, 0xA555AAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAA5AAAA, 0xAAAAAAAA, 0xAAA666AA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x95555556,
+      0xAAAA5955, 0x55565555, 0x55555555, 0xA9555555, 0xAAAA9AAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0x56AAAAAA, 0xAAA65A99, 0xAAAAAAAA, 0xAAA5AAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0x55555555, 0x55555555,
+      0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555, 0x55555555,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x6AAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAA95A, 0xAAAAAAAA, 0xAAAAA95A, 0xAAAAAAAA, 0xAAAAAA5A, 0xAAAAAAAA, 0xAAAAAA5A,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xA55565AA, 0x55569AAA, 0xA6AAAA55, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xA56AAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAA6AAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAA96A95, 0xAA56AA9A, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAA96AAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAA55, 0xAAAAAAAA, 0xAAAAAAAA, 0xA99559AA, 0xAAAAAA9A, 0xAAAAAAAA, 0x556AAAAA, 0xAAAAAA55,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAA955555, 0xAAAAAAAA, 0xAAAAAAAA, 0x5AAAAAAA,
+      0x556AAAAA, 0xAAAAAAAA, 0x955AAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x555AAA55, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x55555555, 0x55555555, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAABEAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0x555FFFFF, 0xBFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFD7FFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAA6A9AAA, 0xAAAAAAAA, 0xAAAA96AA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xAAAAAAFF, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0x9AAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0x55555555, 0xAAAFFFFF, 0xAAAAAA55, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0x6AAAAAAA,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xAAAAAAAB, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAABFFF, 0xAA56AAAA,
+      0x55AA9656, 0xAAAAAAAA, 0xAAAAAAAA, 0x6A95AAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAA56AAA, 0x5555556A,
+      0xAA555695, 0xAAAAAAAA, 0xA55AAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAA95A, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA, 0xAAAAAAAA,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF,
+      0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xFFFFFFFF, 0xAFFFFFFF,
+  };
+
+  /**
+   * @return the size of the lookup table in bytes
+   */
+  static int tableSize() {
+    return BLOCK_INDEX.length * 2 + BLOCKS.length * 4;
+  }
+
+  static boolean bisearch(int ucs, int[][] table) {
     int min = 0;
     int mid;
-    int max = COMBINING.length - 1;
+    int max = table.length - 1;
 
-    if (ucs < COMBINING[0][0] || ucs > COMBINING[max][1]) {
+    if (ucs < table[0][0] || ucs > table[max][1]) {
       return false;
     }
     while (max >= min) {
       mid = (min + max) / 2;
-      if (ucs > COMBINING[mid][1]) {
+      if (ucs > table[mid][1]) {
         min = mid + 1;
-      } else if (ucs < COMBINING[mid][0]) {
+      } else if (ucs < table[mid][0]) {
         max = mid - 1;
       } else {
         return true;
@@ -189,6 +332,18 @@ public class Wcwidth {
    * in ISO 10646.
    */
   public static int of(int codePoint) {
+    if (codePoint >= 0 && codePoint < TABLE_LIMIT) {
+      int bits = BLOCKS[(BLOCK_INDEX[codePoint >> 8] << 4) | ((codePoint >> 4) & 0xF)];
+      return ((bits >>> ((codePoint & 0xF) << 1)) & 3) - 1;
+    }
+    return compute(codePoint);
+  }
+
+  /**
+   * Compute the width of a code point with the rules of {@link #of(int)}, the lookup table is generated
+   * from this method.
+   */
+  static int compute(int codePoint) {
     // test for 8-bit control characters
     if (codePoint == 0) {
       return 0;
@@ -197,24 +352,11 @@ public class Wcwidth {
       return -1;
     }
     // binary search in table of non-spacing characters
-    if (bisearch(codePoint)) {
+    if (bisearch(codePoint, COMBINING)) {
       return 0;
     }
 
     // if we arrive here, ucs is not a combining or C0/C1 control character
-    return 1 +
-        ((codePoint >= 0x1100 &&
-            (codePoint <= 0x115f ||                    // Hangul Jamo init. consonants
-                codePoint == 0x2329 || codePoint == 0x232a ||
-                (codePoint >= 0x2e80 && codePoint <= 0xa4cf &&
-                    codePoint != 0x303f) ||                  // CJK ... Yi
-                (codePoint >= 0xac00 && codePoint <= 0xd7a3) || // Hangul Syllables
-                (codePoint >= 0xf900 && codePoint <= 0xfaff) || // CJK Compatibility Ideographs
-                (codePoint >= 0xfe10 && codePoint <= 0xfe19) || // Vertical forms
-                (codePoint >= 0xfe30 && codePoint <= 0xfe6f) || // CJK Compatibility Forms
-                (codePoint >= 0xff00 && codePoint <= 0xff60) || // Fullwidth Forms
-                (codePoint >= 0xffe0 && codePoint <= 0xffe6) ||
-                (codePoint >= 0x20000 && codePoint <= 0x2fffd) ||
-                (codePoint >= 0x30000 && codePoint <= 0x3fffd))) ? 1 : 0);
+    return bisearch(codePoint, WIDE) ? 2 : 1;
   }
 }
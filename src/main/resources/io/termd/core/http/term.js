@@ -2807,6 +2807,8 @@ Terminal.prototype.resize = function(x, y) {
   // screen buffer. just set it
   // to null for now.
   this.normal = null;
+
+  this.emit('resize', {cols: x, rows: y});
 };
 
 Terminal.prototype.updateRange = function(y) {
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.http;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.termd.core.TestBase;
+import io.termd.core.util.Helper;
+import io.termd.core.util.Vector;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class HttpTtyConnectionTest extends TestBase {
+
+  private final List<String> reads = new ArrayList<>();
+  private final List<Vector> sizes = new ArrayList<>();
+
+  private HttpTtyConnection connection() {
+    HttpTtyConnection conn = new HttpTtyConnection() {
+      @Override
+      protected void write(byte[] buffer) {
+      }
+      @Override
+      public void execute(Runnable task) {
+        task.run();
+      }
+      @Override
+      public void schedule(Runnable task, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+      }
+      @Override
+      public void close() {
+      }
+    };
+    conn.setStdinHandler(codePoints -> reads.add(Helper.fromCodePoints(codePoints)));
+    conn.setSizeHandler(sizes::add);
+    return conn;
+  }
+
+  @Test
+  public void testRead() {
+    HttpTtyConnection conn = connection();
+    conn.writeToDecoder("{\"action\":\"read\",\"data\":\"abc\"}");
+    conn.writeToDecoder("{\"data\":\"d\\u00e9\\ud83d\\ude00\",\"extra\":{\"a\":[1,2]},\"action\":\"read\"}");
+    assertEquals(Arrays.asList("abc", "d\u00e9\uD83D\uDE00"), reads);
+    assertEquals(0L, conn.getMalformedMessages());
+  }
+
+  @Test
+  public void testReadByteBuf() {
+    HttpTtyConnection conn = connection();
+    byte[] msg = "{\"action\":\"read\",\"data\":\"\u3042b\"}".getBytes(StandardCharsets.UTF_8);
+    ByteBuf heap = Unpooled.wrappedBuffer(msg);
+    conn.writeJsonMessage(heap);
+    ByteBuf direct = Unpooled.directBuffer().writeBytes(msg);
+    conn.writeJsonMessage(direct);
+    direct.release();
+    assertEquals(Arrays.asList("\u3042b", "\u3042b"), reads);
+    assertEquals(msg.length, heap.readableBytes());
+  }
+
+  @Test
+  public void testResize() {
+    HttpTtyConnection conn = connection();
+    conn.writeToDecoder("{\"action\":\"resize\",\"cols\":100,\"rows\":50}");
+    conn.writeToDecoder("{\"action\":\"resize\",\"cols\":120}");
+    conn.writeToDecoder("{\"action\":\"resize\",\"cols\":-1}");
+    assertEquals(Arrays.asList(new Vector(100, 50), new Vector(120, 50)), sizes);
+    assertEquals(0L, conn.getMalformedMessages());
+  }
+
+  @Test
+  public void testUnknownAction() {
+    HttpTtyConnection conn = connection();
+    conn.writeToDecoder("{\"action\":\"whatever\",\"data\":\"abc\"}");
+    assertEquals(0, reads.size());
+    assertEquals(0L, conn.getMalformedMessages());
+  }
+
+  @Test
+  public void testMalformed() {
+    HttpTtyConnection conn = connection();
+    String[] messages = {
+        "",
+        "{",
+        "[]",
+        "{\"action\":\"read\",\"data\":\"abc\"",
+        "{\"data\":\"abc\"}",
+        "{\"action\":3}",
+        "{\"action\":\"read\"}",
+        "{\"action\":\"read\",\"data\":3}",
+        "{\"action\":\"resize\",\"cols\":\"a\"}",
+    };
+    for (String message : messages) {
+      conn.writeToDecoder(message);
+    }
+    conn.writeJsonMessage(Unpooled.copiedBuffer("{\"action\"", StandardCharsets.UTF_8));
+    assertEquals(0, reads.size());
+    assertEquals(0, sizes.size());
+    assertEquals((long) messages.length + 1, conn.getMalformedMessages());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.http;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class OutputRingTest {
+
+  private static void write(OutputRing ring, String s) {
+    ring.write(ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static String read(OutputRing ring, long offset) {
+    return new String(ring.read(offset), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testWrite() {
+    OutputRing ring = new OutputRing(8);
+    assertEquals(0, ring.start());
+    assertEquals(0, ring.end());
+    write(ring, "abc");
+    assertEquals(0, ring.start());
+    assertEquals(3, ring.end());
+    assertEquals("abc", read(ring, 0));
+    assertEquals("c", read(ring, 2));
+    assertEquals("", read(ring, 3));
+    assertEquals('b', ring.get(1));
+  }
+
+  @Test
+  public void testWrap() {
+    OutputRing ring = new OutputRing(8);
+    write(ring, "abcdef");
+    write(ring, "ghij");
+    assertEquals(2, ring.start());
+    assertEquals(10, ring.end());
+    assertEquals("cdefghij", read(ring, 2));
+    assertEquals("hij", read(ring, 7));
+    assertEquals('i', ring.get(8));
+  }
+
+  @Test
+  public void testWriteLargerThanCapacity() {
+    OutputRing ring = new OutputRing(4);
+    write(ring, "a");
+    write(ring, "0123456789");
+    assertEquals(7, ring.start());
+    assertEquals(11, ring.end());
+    assertEquals("6789", read(ring, 7));
+  }
+
+  @Test
+  public void testOffsetOutOfBounds() {
+    OutputRing ring = new OutputRing(4);
+    write(ring, "abcdef");
+    try {
+      ring.read(1);
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+    try {
+      ring.read(7);
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+    try {
+      ring.get(1);
+      fail();
+    } catch (IndexOutOfBoundsException ignore) {
+    }
+  }
+
+  @Test
+  public void testInvalidCapacity() {
+    try {
+      new OutputRing(0);
+      fail();
+    } catch (IllegalArgumentException ignore) {
+    }
+  }
+}
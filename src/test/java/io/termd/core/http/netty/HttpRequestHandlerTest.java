@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.http.netty;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.termd.core.TestBase;
+import io.termd.core.http.HttpTtyConnection;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class HttpRequestHandlerTest extends TestBase {
+
+  private EmbeddedChannel channel = new EmbeddedChannel(new HttpRequestHandler("/ws"));
+
+  private FullHttpResponse send(FullHttpRequest request) {
+    channel.writeInbound(request);
+    FullHttpResponse response = channel.readOutbound();
+    assertNotNull(response);
+    return response;
+  }
+
+  private static FullHttpRequest get(String uri) {
+    return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, uri);
+  }
+
+  private static byte[] resource(String name) throws Exception {
+    try (InputStream in = HttpTtyConnection.class.getResourceAsStream(name)) {
+      return readAll(in);
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[1024];
+    for (int l = in.read(buffer);l != -1;l = in.read(buffer)) {
+      out.write(buffer, 0, l);
+    }
+    return out.toByteArray();
+  }
+
+  private static byte[] content(FullHttpResponse response) throws Exception {
+    return readAll(new ByteBufInputStream(response.content().duplicate()));
+  }
+
+  @Test
+  public void testGet() throws Exception {
+    FullHttpResponse response = send(get("/?foo=bar"));
+    assertEquals(HttpResponseStatus.OK, response.status());
+    assertEquals("text/html", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+    assertNotNull(response.headers().get(HttpHeaderNames.ETAG));
+    assertNotNull(response.headers().get(HttpHeaderNames.LAST_MODIFIED));
+    assertEquals(null, response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+    byte[] expected = resource("index.html");
+    assertEquals(String.valueOf(expected.length), response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+    assertTrue(Arrays.equals(expected, content(response)));
+    response.release();
+    assertTrue(channel.isOpen());
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+    FullHttpRequest request = get("/term.js");
+    request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "deflate, gzip;q=0.8");
+    FullHttpResponse response = send(request);
+    assertEquals(HttpResponseStatus.OK, response.status());
+    assertEquals("gzip", response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+    assertEquals("application/javascript", response.headers().get(HttpHeaderNames.CONTENT_TYPE));
+    byte[] expected = resource("term.js");
+    byte[] compressed = content(response);
+    assertTrue(compressed.length < expected.length);
+    assertTrue(Arrays.equals(expected, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed)))));
+    response.release();
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip;q=0");
+    response = send(request);
+    assertEquals(null, response.headers().get(HttpHeaderNames.CONTENT_ENCODING));
+    response.release();
+  }
+
+  @Test
+  public void testNotModified() throws Exception {
+    FullHttpResponse response = send(get("/term.js"));
+    String etag = response.headers().get(HttpHeaderNames.ETAG);
+    String lastModified = response.headers().get(HttpHeaderNames.LAST_MODIFIED);
+    response.release();
+    FullHttpRequest request = get("/term.js");
+    request.headers().set(HttpHeaderNames.IF_NONE_MATCH, "\"abc\", " + etag);
+    response = send(request);
+    assertEquals(HttpResponseStatus.NOT_MODIFIED, response.status());
+    assertEquals(0, response.content().readableBytes());
+    assertEquals(etag, response.headers().get(HttpHeaderNames.ETAG));
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.IF_NONE_MATCH, "\"abc\"");
+    response = send(request);
+    assertEquals(HttpResponseStatus.OK, response.status());
+    response.release();
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+    request.headers().set(HttpHeaderNames.IF_NONE_MATCH, etag);
+    response = send(request);
+    assertEquals(HttpResponseStatus.OK, response.status());
+    String gzipEtag = response.headers().get(HttpHeaderNames.ETAG);
+    assertFalse(etag.equals(gzipEtag));
+    response.release();
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.ACCEPT_ENCODING, "gzip");
+    request.headers().set(HttpHeaderNames.IF_NONE_MATCH, gzipEtag);
+    response = send(request);
+    assertEquals(HttpResponseStatus.NOT_MODIFIED, response.status());
+    // The gzip etag does not match the identity representation
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.IF_NONE_MATCH, gzipEtag);
+    response = send(request);
+    assertEquals(HttpResponseStatus.OK, response.status());
+    response.release();
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.IF_MODIFIED_SINCE, lastModified);
+    response = send(request);
+    assertEquals(HttpResponseStatus.NOT_MODIFIED, response.status());
+    request = get("/term.js");
+    request.headers().set(HttpHeaderNames.IF_MODIFIED_SINCE, "Thu, 01 Jan 1970 00:00:00 GMT");
+    response = send(request);
+    assertEquals(HttpResponseStatus.OK, response.status());
+    response.release();
+  }
+
+  @Test
+  public void testHead() throws Exception {
+    FullHttpResponse response = send(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.HEAD, "/index.html"));
+    assertEquals(HttpResponseStatus.OK, response.status());
+    assertEquals(String.valueOf(resource("index.html").length), response.headers().get(HttpHeaderNames.CONTENT_LENGTH));
+    assertEquals(0, response.content().readableBytes());
+  }
+
+  @Test
+  public void testNotFound() throws Exception {
+    assertEquals(HttpResponseStatus.NOT_FOUND, send(get("/missing.html")).status());
+    assertEquals(HttpResponseStatus.NOT_FOUND, send(get("/HttpTtyConnection.class")).status());
+    assertEquals(HttpResponseStatus.NOT_FOUND, send(get("/../http/index.html")).status());
+    assertTrue(channel.isOpen());
+  }
+
+  @Test
+  public void testMethodNotAllowed() throws Exception {
+    FullHttpResponse response = send(new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, "/index.html"));
+    assertEquals(HttpResponseStatus.METHOD_NOT_ALLOWED, response.status());
+  }
+
+  @Test
+  public void testConnectionClose() throws Exception {
+    FullHttpRequest request = get("/index.html");
+    request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+    send(request).release();
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void testKeepAliveHttp10() throws Exception {
+    FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_0, HttpMethod.GET, "/index.html");
+    send(request).release();
+    assertFalse(channel.isOpen());
+    channel = new EmbeddedChannel(new HttpRequestHandler("/ws"));
+    request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_0, HttpMethod.GET, "/index.html");
+    request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+    FullHttpResponse response = send(request);
+    assertEquals("keep-alive", response.headers().get(HttpHeaderNames.CONNECTION));
+    response.release();
+    assertTrue(channel.isOpen());
+  }
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.termd.core.http.netty;
+
+import io.termd.core.TestBase;
+import io.termd.core.http.HttpTtyConnection;
+import io.termd.core.tty.TtyConnection;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class NettyWebsocketSessionTest extends TestBase {
+
+  private NettyWebsocketTtyBootstrap bootstrap;
+  private final BlockingQueue<TtyConnection> connections = new ArrayBlockingQueue<>(10);
+  private final AtomicInteger closed = new AtomicInteger();
+  private final CountDownLatch closeLatch = new CountDownLatch(1);
+  private Socket socket;
+  private DataInputStream in;
+
+  @After
+  public void after() throws Exception {
+    if (socket != null) {
+      socket.close();
+    }
+    if (bootstrap != null) {
+      bootstrap.stop().get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private void start(NettyWebsocketTtyBootstrap bootstrap) throws Exception {
+    this.bootstrap = bootstrap.setHost("localhost").setPort(8080);
+    bootstrap.start(conn -> {
+      conn.setCloseHandler(v -> {
+        closed.incrementAndGet();
+        closeLatch.countDown();
+      });
+      connections.add(conn);
+    }).get(10, TimeUnit.SECONDS);
+  }
+
+  private TtyConnection connection() throws Exception {
+    TtyConnection conn = connections.poll(10, TimeUnit.SECONDS);
+    assertNotNull(conn);
+    return conn;
+  }
+
+  /**
+   * Perform the handshake of a client of the binary protocol or of the json protocol.
+   */
+  private void connect(boolean binary) throws Exception {
+    connect(binary ? HttpTtyConnection.BINARY_PROTOCOL : null);
+  }
+
+  /**
+   * Perform the handshake of a client of the binary protocol resuming a session.
+   */
+  private void resume(String token, long offset) throws Exception {
+    connect(HttpTtyConnection.BINARY_PROTOCOL + ", " + HttpTtyConnection.RESUME_PROTOCOL + offset + "." + token);
+  }
+
+  private void connect(String protocols) throws Exception {
+    socket = new Socket("localhost", 8080);
+    socket.setSoTimeout(10000);
+    in = new DataInputStream(socket.getInputStream());
+    OutputStream out = socket.getOutputStream();
+    out.write(("GET /ws HTTP/1.1\r\n" +
+        "Host: localhost:8080\r\n" +
+        "Upgrade: websocket\r\n" +
+        "Connection: Upgrade\r\n" +
+        "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+        "Sec-WebSocket-Version: 13\r\n" +
+        (protocols != null ? "Sec-WebSocket-Protocol: " + protocols + "\r\n" : "") +
+        "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+    ByteArrayOutputStream headers = new ByteArrayOutputStream();
+    while (!headers.toString("US-ASCII").endsWith("\r\n\r\n")) {
+      headers.write(in.readUnsignedByte());
+    }
+    assertTrue(headers.toString("US-ASCII"), headers.toString("US-ASCII").startsWith("HTTP/1.1 101"));
+  }
+
+  private void disconnect() throws Exception {
+    socket.close();
+    socket = null;
+  }
+
+  /**
+   * Read a frame and return its payload.
+   */
+  private ByteBuffer readFrame(int opcode) throws Exception {
+    int b0 = in.readUnsignedByte();
+    int b1 = in.readUnsignedByte();
+    assertEquals(opcode, b0 & 0x0F);
+    long length = b1 & 0x7F;
+    if (length == 126) {
+      length = in.readUnsignedShort();
+    } else if (length == 127) {
+      length = in.readLong();
+    }
+    byte[] payload = new byte[(int) length];
+    in.readFully(payload);
+    return ByteBuffer.wrap(payload);
+  }
+
+  /**
+   * Read a session message and return the session token, asserting its offset.
+   */
+  private String readSession(long offset) throws Exception {
+    ByteBuffer msg = readFrame(2);
+    assertEquals(HttpTtyConnection.OP_SESSION, msg.get());
+    assertEquals(offset, msg.getLong());
+    return StandardCharsets.UTF_8.decode(msg).toString();
+  }
+
+  private String readData() throws Exception {
+    ByteBuffer msg = readFrame(2);
+    assertEquals(HttpTtyConnection.OP_DATA, msg.get());
+    return StandardCharsets.UTF_8.decode(msg).toString();
+  }
+
+  @Test
+  public void testResume() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(10000));
+    connect(true);
+    TtyConnection conn = connection();
+    String token = readSession(0);
+    conn.write("hello");
+    assertEquals("hello", readData());
+    disconnect();
+    conn.write("world");
+    resume(token, 5);
+    assertEquals(token, readSession(5));
+    assertEquals("world", readData());
+    conn.write("!");
+    assertEquals("!", readData());
+    assertNull(connections.poll());
+    assertEquals(0, closed.get());
+  }
+
+  @Test
+  public void testResumeAttachedRejected() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(10000));
+    connect(true);
+    TtyConnection conn = connection();
+    String token = readSession(0);
+    DataInputStream prev = in;
+    Socket prevSocket = socket;
+    resume(token, 0);
+    // The channel resuming a session still attached is closed
+    assertEquals(0x88, in.read());
+    socket.close();
+    socket = prevSocket;
+    in = prev;
+    conn.write("hello");
+    assertEquals("hello", readData());
+    assertNull(connections.poll());
+    assertEquals(0, closed.get());
+  }
+
+  @Test
+  public void testResumeAfterOverflow() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(10000).setSessionBufferSize(3));
+    connect(true);
+    TtyConnection conn = connection();
+    String token = readSession(0);
+    disconnect();
+    // The ring keeps the last 3 bytes of 0xC3 0xA9 0xC3 0xA9, the replay starts at the next character
+    conn.write("\u00e9\u00e9");
+    resume(token, 0);
+    assertEquals(token, readSession(2));
+    assertEquals("\u00e9", readData());
+  }
+
+  @Test
+  public void testExpire() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(100));
+    connect(true);
+    connection();
+    String token = readSession(0);
+    disconnect();
+    assertTrue(closeLatch.await(10, TimeUnit.SECONDS));
+    resume(token, 0);
+    connection();
+    assertFalse(token.equals(readSession(0)));
+  }
+
+  @Test
+  public void testClose() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(10000));
+    connect(true);
+    TtyConnection conn = connection();
+    String token = readSession(0);
+    conn.close();
+    assertTrue(closeLatch.await(10, TimeUnit.SECONDS));
+    resume(token, 0);
+    connection();
+    assertFalse(token.equals(readSession(0)));
+  }
+
+  @Test
+  public void testInvalidToken() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(10000));
+    resume("unknown", 12);
+    connection();
+    assertFalse("unknown".equals(readSession(0)));
+  }
+
+  @Test
+  public void testJsonNotResumable() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setSessionGracePeriod(10000));
+    connect(false);
+    TtyConnection conn = connection();
+    conn.write("hello");
+    assertEquals("hello", StandardCharsets.UTF_8.decode(readFrame(1)).toString());
+    disconnect();
+    assertTrue(closeLatch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    start(new NettyWebsocketTtyBootstrap());
+    connect(true);
+    TtyConnection conn = connection();
+    conn.write("hello");
+    assertEquals("hello", readData());
+    disconnect();
+    assertTrue(closeLatch.await(10, TimeUnit.SECONDS));
+  }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.http.netty;
+
+import io.termd.core.TestBase;
+import io.termd.core.tty.TtyConnection;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.Inflater;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class NettyWebsocketTtyBootstrapTest extends TestBase {
+
+  private NettyWebsocketTtyBootstrap bootstrap;
+  private Socket socket;
+  private DataInputStream in;
+
+  @After
+  public void after() throws Exception {
+    if (socket != null) {
+      socket.close();
+    }
+    if (bootstrap != null) {
+      bootstrap.stop().get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  private void start(NettyWebsocketTtyBootstrap bootstrap, Consumer<TtyConnection> handler) throws Exception {
+    this.bootstrap = bootstrap.setHost("localhost").setPort(8080);
+    bootstrap.start(handler).get(10, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Perform the handshake and return the response headers.
+   */
+  private String connect(String extensions) throws Exception {
+    socket = new Socket("localhost", 8080);
+    socket.setSoTimeout(10000);
+    in = new DataInputStream(socket.getInputStream());
+    OutputStream out = socket.getOutputStream();
+    out.write(("GET /ws HTTP/1.1\r\n" +
+        "Host: localhost:8080\r\n" +
+        "Upgrade: websocket\r\n" +
+        "Connection: Upgrade\r\n" +
+        "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+        "Sec-WebSocket-Version: 13\r\n" +
+        (extensions != null ? "Sec-WebSocket-Extensions: " + extensions + "\r\n" : "") +
+        "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.flush();
+    ByteArrayOutputStream headers = new ByteArrayOutputStream();
+    while (!headers.toString("US-ASCII").endsWith("\r\n\r\n")) {
+      headers.write(in.readUnsignedByte());
+    }
+    return headers.toString("US-ASCII");
+  }
+
+  /**
+   * Read a text frame and return its payload, inflated when the frame is compressed.
+   */
+  private String readFrame() throws Exception {
+    int b0 = in.readUnsignedByte();
+    int b1 = in.readUnsignedByte();
+    assertEquals(1, b0 & 0x0F);
+    long length = b1 & 0x7F;
+    if (length == 126) {
+      length = in.readUnsignedShort();
+    } else if (length == 127) {
+      length = in.readLong();
+    }
+    byte[] payload = new byte[(int) length];
+    in.readFully(payload);
+    if ((b0 & 0x40) != 0) {
+      Inflater inflater = new Inflater(true);
+      inflater.setInput(payload);
+      byte[] buffer = new byte[1024];
+      int len = inflater.inflate(buffer);
+      if (len == 0) {
+        inflater.setInput(new byte[]{0, 0, (byte) 0xFF, (byte) 0xFF});
+        len = inflater.inflate(buffer);
+      }
+      inflater.end();
+      return "deflate:" + new String(buffer, 0, len, StandardCharsets.UTF_8);
+    }
+    return new String(payload, StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testCompression() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setCompression(true), conn -> conn.write("hello hello hello"));
+    String headers = connect("permessage-deflate");
+    assertTrue(headers, headers.contains("permessage-deflate"));
+    assertEquals("deflate:hello hello hello", readFrame());
+  }
+
+  @Test
+  public void testCompressionNotNegotiated() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setCompression(true), conn -> conn.write("hello"));
+    String headers = connect(null);
+    assertFalse(headers.contains("permessage-deflate"));
+    assertEquals("hello", readFrame());
+  }
+
+  @Test
+  public void testNoCompression() throws Exception {
+    start(new NettyWebsocketTtyBootstrap(), conn -> conn.write("hello"));
+    String headers = connect("permessage-deflate");
+    assertFalse(headers.contains("permessage-deflate"));
+    assertEquals("hello", readFrame());
+  }
+
+  @Test
+  public void testBatchDelay() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setBatchDelay(200), conn -> {
+      conn.write("a");
+      conn.schedule(() -> conn.write("b"), 10, TimeUnit.MILLISECONDS);
+      conn.schedule(() -> conn.write("c"), 400, TimeUnit.MILLISECONDS);
+    });
+    connect(null);
+    assertEquals("ab", readFrame());
+    assertEquals("c", readFrame());
+  }
+
+  @Test
+  public void testBatchSize() throws Exception {
+    start(new NettyWebsocketTtyBootstrap().setBatchDelay(10000).setBatchSize(4), conn -> {
+      conn.write("ab");
+      conn.schedule(() -> conn.write("cd"), 10, TimeUnit.MILLISECONDS);
+    });
+    connect(null);
+    assertEquals("abcd", readFrame());
+  }
+
+  @Test
+  public void testNoBatch() throws Exception {
+    start(new NettyWebsocketTtyBootstrap(), conn -> {
+      conn.write("a");
+      conn.schedule(() -> conn.write("b"), 10, TimeUnit.MILLISECONDS);
+    });
+    connect(null);
+    assertEquals("a", readFrame());
+    assertEquals("b", readFrame());
+  }
+}
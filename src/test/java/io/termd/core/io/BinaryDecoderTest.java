@@ -4,7 +4,9 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 import java.util.function.Consumer;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -31,4 +33,82 @@ public class BinaryDecoderTest {
 
     Assert.assertEquals("fffd", hexes.get(0));
   }
+
+  @Test
+  public void testSinkReusesBuffer() {
+    List<int[]> buffers = new ArrayList<>();
+    StringBuilder sb = new StringBuilder();
+    BinaryDecoder binaryDecoder = new BinaryDecoder(4, UTF_8, (buf, off, len) -> {
+      buffers.add(buf);
+      sb.append(new String(buf, off, len));
+    });
+    binaryDecoder.write("abcdefgh".getBytes(UTF_8));
+    binaryDecoder.write("\u20AC".getBytes(UTF_8), 0, 2);
+    binaryDecoder.write("\u20AC".getBytes(UTF_8), 2, 1);
+    binaryDecoder.write("ijklmnopqrstuvwxyz".getBytes(UTF_8));
+    Assert.assertEquals("abcdefgh\u20ACijklmnopqrstuvwxyz", sb.toString());
+    for (int[] buffer : buffers) {
+      Assert.assertSame(buffers.get(0), buffer);
+    }
+  }
+
+  @Test
+  public void testConsumerReceivesCopies() {
+    List<int[]> buffers = new ArrayList<>();
+    BinaryDecoder binaryDecoder = new BinaryDecoder(4, UTF_8, (Consumer<int[]>) buffers::add);
+    binaryDecoder.write("abcdef".getBytes(UTF_8));
+    Assert.assertEquals(2, buffers.size());
+    Assert.assertArrayEquals(new int[]{'a', 'b', 'c', 'd'}, buffers.get(0));
+    Assert.assertArrayEquals(new int[]{'e', 'f'}, buffers.get(1));
+  }
+
+  @Test
+  public void testUtf8SplitSequences() {
+    String s = "a\u00E9\u20AC" + new StringBuilder().appendCodePoint(0x1F600) + "z";
+    byte[] bytes = s.getBytes(UTF_8);
+    for (int i = 0;i < bytes.length;i++) {
+      StringBuilder sb = new StringBuilder();
+      BinaryDecoder decoder = new BinaryDecoder(UTF_8, (buf, off, len) -> sb.append(new String(buf, off, len)));
+      decoder.write(bytes, 0, i);
+      decoder.write(bytes, i, bytes.length - i);
+      Assert.assertEquals(s, sb.toString());
+    }
+  }
+
+  @Test
+  public void testUtf8MalformedInput() {
+    Random random = new Random(0);
+    // 0xED is not used as the JDK replaces an encoded surrogate by a single U+FFFD
+    int[] interesting = {0x00, 0x41, 0x7F, 0x80, 0x8F, 0x90, 0x9F, 0xA0, 0xBF, 0xC0, 0xC1, 0xC2, 0xDF, 0xE0, 0xEF, 0xF0, 0xF4, 0xF5, 0xFF};
+    for (int i = 0;i < 10000;i++) {
+      byte[] bytes = new byte[random.nextInt(8)];
+      for (int j = 0;j < bytes.length;j++) {
+        bytes[j] = (byte) interesting[random.nextInt(interesting.length)];
+      }
+      StringBuilder sb = new StringBuilder();
+      BinaryDecoder decoder = new BinaryDecoder(2, UTF_8, (buf, off, len) -> sb.append(new String(buf, off, len)));
+      int split = bytes.length > 0 ? random.nextInt(bytes.length) : 0;
+      decoder.write(bytes, 0, split);
+      decoder.write(bytes, split, bytes.length - split);
+      String expected = new String(bytes, UTF_8);
+      if (sb.length() < expected.length()) {
+        // An incomplete sequence at the end is kept for the next write
+        Assert.assertEquals(expected.substring(0, sb.length()), sb.toString());
+      } else {
+        Assert.assertEquals(expected, sb.toString());
+      }
+    }
+  }
+
+  @Test
+  public void testUtf8EncodedSurrogate() {
+    List<Integer> codePoints = new ArrayList<>();
+    BinaryDecoder decoder = new BinaryDecoder(UTF_8, (buf, off, len) -> {
+      for (int i = off;i < off + len;i++) {
+        codePoints.add(buf[i]);
+      }
+    });
+    decoder.write(new byte[]{(byte) 0xED, (byte) 0xA0, (byte) 0x80, 'A'});
+    Assert.assertEquals(Arrays.asList(0xFFFD, 0xFFFD, 0xFFFD, (int) 'A'), codePoints);
+  }
 }
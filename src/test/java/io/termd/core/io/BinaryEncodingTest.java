@@ -1,16 +1,21 @@
 package io.termd.core.io;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import io.termd.core.util.Helper;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.function.Consumer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -96,4 +101,53 @@ public class BinaryEncodingTest {
     assertEquals(1, codePoints.size());
     assertEquals('\u20AC', (int)codePoints.get(0));
   }
+
+  @Test
+  public void testEncodeToByteBuf() {
+    String s = "ab\u00E9\u20AC" + new StringBuilder().appendCodePoint(66231) + "\u4E2D";
+    int[] codePoints = Helper.toCodePoints(s);
+    for (Charset charset : Arrays.asList(UTF8, StandardCharsets.US_ASCII, StandardCharsets.ISO_8859_1, StandardCharsets.UTF_16BE)) {
+      BinaryEncoder encoder = new BinaryEncoder(charset);
+      ByteBuf buf = Unpooled.buffer(1);
+      buf.writeByte('>');
+      encoder.encode(codePoints, 1, codePoints.length - 1, buf);
+      byte[] expected = s.substring(1).getBytes(charset);
+      assertEquals(1 + expected.length, buf.readableBytes());
+      assertEquals('>', buf.readByte());
+      byte[] actual = new byte[expected.length];
+      buf.readBytes(actual);
+      assertEquals(charset.name(), Helper.list(toInts(expected)), Helper.list(toInts(actual)));
+      assertTrue(encoder.maxEncodedLength(codePoints, 1, codePoints.length - 1) >= expected.length);
+    }
+  }
+
+  @Test
+  public void testEncodeToDirectByteBuf() {
+    BinaryEncoder encoder = new BinaryEncoder(UTF8);
+    ByteBuf buf = Unpooled.directBuffer(1);
+    try {
+      encoder.encode(Helper.toCodePoints("h\u00E9llo"), 0, 5, buf);
+      assertEquals("h\u00E9llo", buf.toString(UTF8));
+    } finally {
+      buf.release();
+    }
+  }
+
+  @Test
+  public void testAcceptWithoutConsumer() {
+    BinaryEncoder encoder = new BinaryEncoder(UTF8);
+    try {
+      encoder.accept(Helper.toCodePoints("hello"));
+      fail();
+    } catch (IllegalStateException ignore) {
+    }
+  }
+
+  private static int[] toInts(byte[] bytes) {
+    int[] ints = new int[bytes.length];
+    for (int i = 0;i < bytes.length;i++) {
+      ints[i] = bytes[i];
+    }
+    return ints;
+  }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.pty;
+
+import io.termd.core.TestBase;
+import io.termd.core.http.HttpTtyConnection;
+import io.termd.core.util.Helper;
+import org.junit.Test;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyBridgeTest extends TestBase {
+
+  private volatile boolean writable = true;
+  private final HttpTtyConnection conn = new HttpTtyConnection() {
+    @Override
+    protected void write(byte[] buffer) {
+    }
+    @Override
+    public boolean isWritable() {
+      return writable;
+    }
+    @Override
+    public void execute(Runnable task) {
+      task.run();
+    }
+    @Override
+    public void schedule(Runnable task, long delay, TimeUnit unit) {
+      throw new UnsupportedOperationException();
+    }
+    @Override
+    public void close() {
+    }
+  };
+  private final BlockingQueue<PtyMaster> tasks = new ArrayBlockingQueue<>(1);
+  private final StringBuffer output = new StringBuffer();
+  private final AtomicLong outputLength = new AtomicLong();
+
+  private void exec(String line) throws Exception {
+    new TtyBridge(conn)
+        .setProcessListener(tasks::add)
+        .setProcessStdoutListener(codePoints -> {
+          output.append(Helper.fromCodePoints(codePoints));
+          outputLength.addAndGet(codePoints.length);
+        })
+        .readline();
+    conn.writeToDecoder("{\"action\":\"read\",\"data\":\"" + line + "\\r\"}");
+  }
+
+  private void assertWaitUntil(BooleanSupplier condition) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > deadline) {
+        throw failure("Timed out");
+      }
+      Thread.sleep(10);
+    }
+  }
+
+  private void setWritable(boolean writable) {
+    this.writable = writable;
+    conn.onWritabilityChanged(writable);
+  }
+
+  @Test
+  public void testNotWritableBeforeStart() throws Exception {
+    writable = false;
+    exec("echo hello");
+    assertNotNull(tasks.poll(10, TimeUnit.SECONDS));
+    Thread.sleep(500);
+    assertEquals("", output.toString());
+    setWritable(true);
+    assertWaitUntil(() -> output.toString().equals("hello\n"));
+  }
+
+  @Test
+  public void testPauseWhileNotWritable() throws Exception {
+    exec("yes");
+    PtyMaster task = tasks.poll(10, TimeUnit.SECONDS);
+    assertNotNull(task);
+    try {
+      assertWaitUntil(() -> outputLength.get() > 0);
+      setWritable(false);
+      // A read in progress when pausing is still delivered
+      Thread.sleep(200);
+      long paused = outputLength.get();
+      Thread.sleep(500);
+      assertEquals(paused, outputLength.get());
+      setWritable(true);
+      assertWaitUntil(() -> outputLength.get() > paused);
+    } finally {
+      task.interruptProcess();
+    }
+  }
+}
@@ -115,4 +115,103 @@ public class EventQueueTest {
     } catch (ReadOnlyBufferException ignore) {
     }
   }
+
+  @Test
+  public void testLastBindingWins() {
+    Keymap keymap = new Keymap(new ByteArrayInputStream("\"ab\":foo\n\"ab\":bar".getBytes()));
+    EventQueue queue = new EventQueue(keymap);
+    queue.append('a', 'b');
+    assertEquals("bar", ((FunctionEvent) queue.next()).name());
+  }
+
+  @Test
+  public void testLongestBinding() {
+    Keymap keymap = new Keymap(new ByteArrayInputStream("\"a\":foo\n\"abc\":bar".getBytes()));
+    EventQueue queue = new EventQueue(keymap);
+    queue.append('a', 'b');
+    assertEquals("foo", ((FunctionEvent) queue.peek()).name());
+    queue.append('c');
+    assertEquals("bar", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testBindFunction() {
+    Keymap keymap = new Keymap(new ByteArrayInputStream("\"ab\":foo".getBytes()));
+    EventQueue queue = new EventQueue(keymap);
+    keymap.bindFunction("x", "bar");
+    assertEquals('x', queue.append('x').next().getCodePointAt(0));
+    queue = new EventQueue(keymap);
+    assertEquals("bar", ((FunctionEvent) queue.append('x').next()).name());
+    assertEquals("foo", ((FunctionEvent) queue.append('a', 'b').next()).name());
+  }
+
+  @Test
+  public void testWrapAround() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"ab\":foo".getBytes())));
+    StringBuilder expected = new StringBuilder();
+    StringBuilder events = new StringBuilder();
+    for (int i = 0;i < 100;i++) {
+      queue.append('c', 'd', 'e', 'f', 'g', 'h', 'i', 'a');
+      queue.append('b', 'c', 'd', 'e', 'f', 'g', 'h', 'i', 'j');
+      expected.append("cdefghi[foo]cdefghij");
+      for (int j = 0;j < 6;j++) {
+        append(events, queue.next());
+      }
+    }
+    while (queue.hasNext()) {
+      append(events, queue.next());
+    }
+    assertEquals(expected.toString(), events.toString());
+    assertEquals(0, queue.getBuffer().capacity());
+  }
+
+  private static void append(StringBuilder sb, KeyEvent event) {
+    if (event instanceof FunctionEvent) {
+      sb.append('[').append(((FunctionEvent) event).name()).append(']');
+    } else {
+      sb.appendCodePoint(event.getCodePointAt(0));
+    }
+  }
+
+  @Test
+  public void testPaste() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"ab\":foo".getBytes())));
+    queue.append(27, '[', '2', '0', '0', '~', 'a', 'b', 27, '[', '2');
+    assertFalse(queue.hasNext());
+    queue.append('0', '1', '~', 'a', 'b');
+    KeyEvent event = queue.next();
+    assertTrue(event instanceof PasteEvent);
+    assertEquals("ab", new String(((PasteEvent) event).text(), 0, 2));
+    assertEquals(14, event.length());
+    assertEquals("foo", ((FunctionEvent) queue.next()).name());
+    assertFalse(queue.hasNext());
+  }
+
+  @Test
+  public void testNotPaste() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"ab\":foo".getBytes())));
+    queue.append(27);
+    assertEquals(27, queue.next().getCodePointAt(0));
+    queue.append(27, '[', '2', '1');
+    assertEquals(27, queue.next().getCodePointAt(0));
+    assertEquals('[', queue.next().getCodePointAt(0));
+  }
+
+  @Test
+  public void testPasteTooLong() {
+    EventQueue queue = new EventQueue(new Keymap(new ByteArrayInputStream("\"ab\":foo".getBytes())), 2);
+    queue.append(27, '[', '2', '0', '0', '~', 'x', 'x', 'x', 'x', 'x', 'x', 'x', 'x');
+    assertFalse(queue.hasNext());
+    queue.append('x');
+    // The end marker is not received within the maximum paste length
+    assertEquals(27, queue.next().getCodePointAt(0));
+    assertEquals('[', queue.next().getCodePointAt(0));
+    int count = 0;
+    while (queue.hasNext()) {
+      assertFalse(queue.next() instanceof PasteEvent);
+      count++;
+    }
+    assertEquals(13, count);
+  }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.readline;
+
+import io.termd.core.TestBase;
+import io.termd.core.util.Helper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class FileHistoryTest extends TestBase {
+
+  private Path file;
+
+  @Before
+  public void before() throws Exception {
+    file = Files.createTempFile("history", null);
+  }
+
+  @After
+  public void after() throws Exception {
+    Files.deleteIfExists(file);
+  }
+
+  @Test
+  public void testPersist() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(0, history.size());
+      history.add(0, Helper.toCodePoints("abc"));
+      history.add(0, Helper.toCodePoints("d\u00e9f"));
+      assertEquals(Arrays.asList("d\u00e9f", "abc"), lines(history));
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(Arrays.asList("d\u00e9f", "abc"), lines(history));
+      history.add(0, Helper.toCodePoints("\uD83D\uDE00\nghi"));
+      assertEquals(Arrays.asList("\uD83D\uDE00\nghi", "d\u00e9f", "abc"), lines(history));
+      history.add(0, Helper.toCodePoints(""));
+      assertEquals("", Helper.fromCodePoints(history.get(0)));
+    }
+  }
+
+  @Test
+  public void testPaging() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      for (int i = 0;i < 1000;i++) {
+        history.add(0, Helper.toCodePoints("line-" + i));
+      }
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(1000, history.size());
+      assertEquals("line-999", Helper.fromCodePoints(history.get(0)));
+      assertEquals("line-990", Helper.fromCodePoints(history.get(9)));
+      assertEquals("line-0", Helper.fromCodePoints(history.get(999)));
+      history.add(0, Helper.toCodePoints("line-1000"));
+      for (int i = 0;i <= 1000;i++) {
+        assertEquals("line-" + (1000 - i), Helper.fromCodePoints(history.get(i)));
+      }
+    }
+  }
+
+  @Test
+  public void testShared() throws Exception {
+    try (FileHistory history1 = new FileHistory(file)) {
+      history1.add(0, Helper.toCodePoints("a"));
+      history1.get(0);
+      try (FileHistory history2 = new FileHistory(file)) {
+        history2.add(0, Helper.toCodePoints("b"));
+        history2.add(0, Helper.toCodePoints("c"));
+      }
+      assertEquals(Arrays.asList("a"), lines(history1));
+      history1.reload();
+      assertEquals(Arrays.asList("c", "b", "a"), lines(history1));
+      history1.add(0, Helper.toCodePoints("d"));
+      assertEquals(Arrays.asList("d", "c", "b", "a"), lines(history1));
+    }
+  }
+
+  @Test
+  public void testConcurrentAdd() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      Thread[] threads = new Thread[4];
+      for (int i = 0;i < threads.length;i++) {
+        int[] line = Helper.toCodePoints("thread-" + i);
+        threads[i] = new Thread(() -> {
+          for (int j = 0;j < 100;j++) {
+            history.add(0, line);
+          }
+        });
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      assertEquals(400, history.size());
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(400, history.size());
+      for (String line : lines(history)) {
+        assertTrue(line.startsWith("thread-"));
+      }
+    }
+  }
+
+  @Test
+  public void testSearch() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      for (String s : new String[]{"ls -l", "cd /tmp", "echo \u3042b", "ls"}) {
+        history.add(0, Helper.toCodePoints(s));
+      }
+      assertEquals(1, history.search(Helper.toCodePoints("\u3042"), 0));
+      assertEquals(0, history.search(Helper.toCodePoints("ls"), 0));
+      assertEquals(3, history.search(Helper.toCodePoints("ls"), 1));
+      assertEquals(-1, history.search(Helper.toCodePoints("ls"), 4));
+      assertEquals(2, history.searchPrefix(Helper.toCodePoints("cd"), 0));
+      assertEquals(-1, history.searchPrefix(Helper.toCodePoints("tmp"), 0));
+    }
+  }
+
+  @Test
+  public void testClear() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      history.add(0, Helper.toCodePoints("abc"));
+      try {
+        history.clear();
+        fail("Was expecting clear to be unsupported");
+      } catch (UnsupportedOperationException ignore) {
+      }
+      assertEquals(Arrays.asList("abc"), lines(history));
+    }
+  }
+
+  @Test
+  public void testTruncateIncompleteRecord() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      history.add(0, Helper.toCodePoints("abc"));
+      history.add(0, Helper.toCodePoints("def"));
+    }
+    long size = Files.size(file);
+    for (int i = 1;i < 11;i++) {
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.truncate(size - i);
+      }
+      try (FileHistory history = new FileHistory(file)) {
+        assertEquals(Arrays.asList("abc"), lines(history));
+        assertEquals(size - 11, Files.size(file));
+        history.add(0, Helper.toCodePoints("def"));
+      }
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(Arrays.asList("def", "abc"), lines(history));
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+        channel.write(ByteBuffer.wrap(new byte[]{'g', 'h'}), size);
+      }
+      history.reload();
+      assertEquals(Arrays.asList("def", "abc"), lines(history));
+      assertEquals(size, Files.size(file));
+      history.add(0, Helper.toCodePoints("ghi"));
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(Arrays.asList("ghi", "def", "abc"), lines(history));
+    }
+  }
+
+  @Test
+  public void testCorruptedLength() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      history.add(0, Helper.toCodePoints("abc"));
+      history.add(0, Helper.toCodePoints("def"));
+      history.add(0, Helper.toCodePoints("ghi"));
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.allocate(4).putInt(0, -5), 3);
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(3, history.size());
+      assertEquals("ghi", Helper.fromCodePoints(history.get(0)));
+      assertEquals("def", Helper.fromCodePoints(history.get(1)));
+      try {
+        history.get(2);
+        fail("Was expecting a corrupted file failure");
+      } catch (UncheckedIOException ignore) {
+      }
+      try {
+        history.search(Helper.toCodePoints("a"), 0);
+        fail("Was expecting a corrupted file failure");
+      } catch (UncheckedIOException ignore) {
+      }
+    }
+  }
+
+  @Test
+  public void testSameFile() throws Exception {
+    try (FileHistory history1 = new FileHistory(file);FileHistory history2 = new FileHistory(file)) {
+      Thread[] threads = new Thread[4];
+      for (int i = 0;i < threads.length;i++) {
+        FileHistory history = i % 2 == 0 ? history1 : history2;
+        threads[i] = new Thread(() -> {
+          for (int j = 0;j < 100;j++) {
+            history.add(0, Helper.toCodePoints("line"));
+          }
+        });
+        threads[i].start();
+      }
+      for (Thread thread : threads) {
+        thread.join();
+      }
+      history1.reload();
+      history2.reload();
+      assertEquals(400, history1.size());
+      assertEquals(400, history2.size());
+    }
+  }
+
+  @Test
+  public void testReadline() throws Exception {
+    try (FileHistory history = new FileHistory(file)) {
+      history.add(0, Helper.toCodePoints("abc"));
+      TestTerm term = new TestTerm(this);
+      term.readline.setHistory(history);
+      Supplier<String> result = term.readlineComplete();
+      term.read(Keys.UP.sequence);
+      term.assertScreen("% abc");
+      term.read('d', '\r');
+      assertEquals("abcd", result.get());
+    }
+    try (FileHistory history = new FileHistory(file)) {
+      assertEquals(Arrays.asList("abcd", "abc"), lines(history));
+    }
+  }
+
+  @Test
+  public void testReadlineAddFailure() throws Exception {
+    FileHistory history = new FileHistory(file);
+    TestTerm term = new TestTerm(this);
+    term.readline.setHistory(history);
+    history.close();
+    Supplier<String> result = term.readlineComplete();
+    term.read('a', '\r');
+    assertEquals("a", result.get());
+    try (FileHistory reopened = new FileHistory(file)) {
+      assertEquals(0, reopened.size());
+    }
+  }
+
+  private static List<String> lines(History history) {
+    List<String> lines = new ArrayList<>();
+    for (int[] line : history) {
+      lines.add(Helper.fromCodePoints(line));
+    }
+    return lines;
+  }
+}
@@ -20,6 +20,11 @@ import io.termd.core.TestBase;
 import io.termd.core.util.Helper;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
+
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
  */
@@ -69,4 +74,112 @@ public class HistoryTest extends TestBase {
     term.read('\r');
     assertEquals(0, term.readline.getHistory().size());
   }
+
+  @Test
+  public void testRing() {
+    History history = new History(3, false);
+    for (String s : new String[]{"a", "b", "c", "d"}) {
+      history.add(0, Helper.toCodePoints(s));
+    }
+    assertEquals(Arrays.asList("d", "c", "b"), lines(history));
+    history.add(Helper.toCodePoints("e"));
+    assertEquals(Arrays.asList("d", "c", "b"), lines(history));
+    history.remove(1);
+    history.add(Helper.toCodePoints("e"));
+    assertEquals(Arrays.asList("d", "b", "e"), lines(history));
+  }
+
+  @Test
+  public void testDedup() {
+    History history = new History(10, true);
+    for (String s : new String[]{"a", "b", "a", "c", "b"}) {
+      history.add(0, Helper.toCodePoints(s));
+    }
+    assertEquals(Arrays.asList("b", "c", "a"), lines(history));
+    history.add(Helper.toCodePoints("c"));
+    assertEquals(Arrays.asList("b", "c", "a"), lines(history));
+  }
+
+  @Test
+  public void testEncoding() {
+    History history = new History();
+    int[] line = Helper.toCodePoints("a\u00e9\u3042\uD83D\uDE00\n");
+    history.add(0, line);
+    assertTrue(Arrays.equals(line, history.get(0)));
+  }
+
+  @Test
+  public void testSearch() {
+    History history = new History();
+    for (String s : new String[]{"ls -l", "cd /tmp", "echo \u3042b", "ls"}) {
+      history.add(0, Helper.toCodePoints(s));
+    }
+    assertEquals(1, history.search(Helper.toCodePoints("\u3042"), 0));
+    assertEquals(0, history.search(Helper.toCodePoints("ls"), 0));
+    assertEquals(3, history.search(Helper.toCodePoints("ls"), 1));
+    assertEquals(-1, history.search(Helper.toCodePoints("ls"), 4));
+    assertEquals(-1, history.search(Helper.toCodePoints("tmpx"), 0));
+    assertEquals(2, history.searchPrefix(Helper.toCodePoints("cd"), 0));
+    assertEquals(-1, history.searchPrefix(Helper.toCodePoints("tmp"), 0));
+  }
+
+  @Test
+  public void testReverseSearch() {
+    TestTerm term = new TestTerm(this);
+    term.readline.getHistory().add(Helper.toCodePoints("abc"));
+    term.readline.getHistory().add(Helper.toCodePoints("bcd"));
+    Supplier<String> result = term.readlineComplete();
+    term.read(18, 'b');
+    term.assertScreen("(reverse-i-search)`b': abc");
+    term.assertAt(0, 24);
+    term.read(18);
+    term.assertScreen("(reverse-i-search)`b': bcd");
+    term.assertAt(0, 23);
+    term.read(18);
+    term.assertScreen("(failed reverse-i-search)`b': bcd");
+    assertEquals(1, term.getBellCount());
+    term.read('\r');
+    term.assertScreen("% bcd");
+    assertEquals("bcd", result.get());
+  }
+
+  @Test
+  public void testReverseSearchAbort() {
+    TestTerm term = new TestTerm(this);
+    term.readline.getHistory().add(Helper.toCodePoints("abc"));
+    term.readlineComplete();
+    term.read('x', 18, 'c');
+    term.assertScreen("(reverse-i-search)`c': abc");
+    term.read(7);
+    term.assertScreen("% x");
+    term.assertAt(0, 3);
+  }
+
+  @Test
+  public void testHistorySearchBackward() {
+    TestTerm term = new TestTerm(this);
+    term.readline.getHistory().add(Helper.toCodePoints("ls -l"));
+    term.readline.getHistory().add(Helper.toCodePoints("cd"));
+    term.readline.getHistory().add(Helper.toCodePoints("ls"));
+    term.readlineComplete();
+    term.read('l', 's');
+    term.read(27, '[', '5', '~');
+    term.assertScreen("% ls -l");
+    term.assertAt(0, 4);
+    term.read(27, '[', '5', '~');
+    term.assertScreen("% ls");
+    term.assertAt(0, 4);
+    term.read(27, '[', '5', '~');
+    term.assertScreen("% ls");
+    term.read(Keys.DOWN.sequence);
+    term.assertScreen("% cd");
+  }
+
+  private static List<String> lines(History history) {
+    List<String> lines = new ArrayList<>();
+    for (int[] line : history) {
+      lines.add(Helper.fromCodePoints(line));
+    }
+    return lines;
+  }
 }
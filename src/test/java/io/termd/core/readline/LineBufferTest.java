@@ -1,8 +1,11 @@
 package io.termd.core.readline;
 
+import io.termd.core.util.Helper;
 import io.termd.core.util.Vector;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 /**
@@ -42,6 +45,66 @@ public class LineBufferTest {
     assertEquals(4, buffer.getSize());
   }
 
+  @Test
+  public void testInsertValid() {
+    LineBuffer buffer = new LineBuffer();
+    buffer.insert('a', 'b');
+    buffer.setCursor(1);
+    assertEquals(2, buffer.insertValid(new int[]{'x', 'c', 1, 'd', '\n', 'e', 0x1B, 'y'}, 1, 6));
+    assertEquals("acd\neb", buffer.toString());
+    assertEquals(5, buffer.getCursor());
+    assertEquals(6, buffer.getSize());
+  }
+
+  @Test
+  public void testInsertGrows() {
+    LineBuffer buffer = new LineBuffer();
+    int[] text = new int[1500];
+    Arrays.fill(text, 'a');
+    assertEquals(0, buffer.insertValid(text, 0, text.length));
+    buffer.insert('b');
+    assertEquals(1501, buffer.getSize());
+    assertEquals('b', buffer.getAt(1500));
+  }
+
+  @Test
+  public void testInsertWidths() {
+    LineBuffer buffer = new LineBuffer();
+    buffer.insert('a', '\u3042', 'e', '\u0301');
+    assertEquals(4, buffer.getSize());
+    assertEquals(new Vector(4, 0), buffer.getCursorPosition(20));
+    assertEquals(new Vector(1, 1), buffer.getCursorPosition(3));
+    assertEquals(new Vector(0, 2), buffer.getPosition(2, 2));
+    try {
+      buffer.insert(0x1B);
+      fail();
+    } catch (IllegalArgumentException ignore) {
+    }
+    assertEquals(2, buffer.insertValid(new int[]{'\u3044', 0, '\u0300', 0x1B}, 0, 4));
+    assertEquals(6, buffer.getSize());
+  }
+
+  @Test
+  public void testPositionIndex() {
+    LineBuffer buffer = new LineBuffer();
+    buffer.insert("ab\u3042c\nd\u3044\u0301efgh");
+    assertPositions(buffer, 4);
+    buffer.setCursor(2);
+    buffer.insert('\u3046', 'x');
+    assertPositions(buffer, 4);
+    buffer.delete(-3);
+    assertPositions(buffer, 4);
+    assertPositions(buffer, 5);
+    buffer.setSize(6);
+    assertPositions(buffer, 5);
+  }
+
+  private static void assertPositions(LineBuffer buffer, int width) {
+    for (int i = 0;i <= buffer.getSize();i++) {
+      assertEquals(Helper.computePosition(buffer.toArray(), new Vector(0, 0), i, width), buffer.getPosition(i, width));
+    }
+  }
+
   @Test
   public void testMoveCursor() {
     LineBuffer buffer = new LineBuffer();
@@ -328,7 +391,7 @@ public class LineBufferTest {
     LineBuffer to = new LineBuffer();
     to.insert('d');
     buffer.update(to, screen, 40);
-    screen.assertCodePoints("\r\033[1Ad\r\033[1B\033[K\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[A\rd\n\033[K\033[Ad").assertEmpty();
   }
 
   @Test
@@ -16,8 +16,15 @@
 
 package io.termd.core.readline;
 
+import io.termd.core.io.CodePointSink;
+import io.termd.core.term.Device;
+import io.termd.core.term.Sequence;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.*;
 
 /**
@@ -80,8 +87,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("a\nbc");
     curr.update(new LineBuffer().insert("abdef"), screen, 20);
-    // TODO : improve that
-    screen.assertCodePoints("\b\033[1Abdef\r\033[1B\033[K\033[1C\033[1C\033[1C\033[1C\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[A\bbdef\n\033[K\033[A\033[5C").assertEmpty();
   }
 
   @Test
@@ -89,7 +95,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcde");
     curr.update(new LineBuffer().insert("aBcdEf"), screen, 20);
-    screen.assertCodePoints("\b\b\b\bB\033[1C\033[1CEf").assertEmpty();
+    screen.assertCodePoints("\raBcdEf").assertEmpty();
   }
 
   @Test
@@ -97,7 +103,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefgh");
     curr.update(new LineBuffer().insert("aBcdefgHi"), screen, 4);
-    screen.assertCodePoints("\033[1C\033[1A\033[1AB\033[1C\033[1BHi").assertEmpty();
+    screen.assertCodePoints("\033[2AaB\nefgHi").assertEmpty();
   }
 
   @Test
@@ -121,7 +127,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("ab\ncd");
     curr.update(new LineBuffer().insert("abcde"), screen, 4);
-    screen.assertCodePoints("\033[1Acde\033[K").assertEmpty();
+    screen.assertCodePoints("\033[Acde\033[K").assertEmpty();
   }
 
   @Test
@@ -129,7 +135,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("ab\ncd");
     curr.update(new LineBuffer().insert("abcd"), screen, 4);
-    screen.assertCodePoints("\033[1Acd \r\033[K").assertEmpty();
+    screen.assertCodePoints("\033[Acd \r\033[K").assertEmpty();
   }
 
   @Test
@@ -137,7 +143,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("ab\nef");
     curr.update(new LineBuffer().insert("abcdefg"), screen, 4);
-    screen.assertCodePoints("\033[1Acd\033[1C\033[1Cg").assertEmpty();
+    screen.assertCodePoints("\033[Acdefg").assertEmpty();
   }
 
   @Test
@@ -153,7 +159,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abc\nb");
     curr.update(new LineBuffer().insert("a\nbc"), screen, 20);
-    screen.assertCodePoints("\033[1A\033[K\n\033[1Cc").assertEmpty();
+    screen.assertCodePoints("\033[A\033[K\nbc").assertEmpty();
   }
 
   @Test
@@ -161,10 +167,9 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("ab\ncd\nef\ngh");
     curr.update(new LineBuffer().insert("AbC"), screen, 20);
-    screen.assertCodePoints("\r\033[1A\033[1A\033[1AA\033[1CC\r\033[1B\033[K"
-            + "\033[1B\033[K\033[1B\033[K"
-            + "\033[1C\033[1C"
-            + "\033[1C\033[1A\033[1A\033[1A"
+    screen.assertCodePoints("\033[3A\rAbC\n\033[K"
+            + "\n\033[K\n\033[K"
+            + "\033[3AAbC"
     ).assertEmpty();
   }
 
@@ -181,7 +186,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefg").setCursor(2);
     curr.update(new LineBuffer().insert("ab"), screen, 4);
-    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1C\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[K\n\033[K\033[Aab").assertEmpty();
   }
 
   @Test
@@ -189,7 +194,7 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefg").setCursor(3);
     curr.update(new LineBuffer().insert("abc"), screen, 4);
-    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1C\033[1C\033[1C\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[K\n\033[K\033[Aabc").assertEmpty();
   }
 
   @Test
@@ -197,9 +202,66 @@ public class LineBufferUpdateTest {
     TestTerminal screen = new TestTerminal();
     LineBuffer curr = new LineBuffer().insert("abcdefghijk").setCursor(2);
     curr.update(new LineBuffer().insert("ab"), screen, 4);
-    // todo:
-    // optimize \033[1C + \033[1C -> \033[2C
-    // optimize \033[1A + \033[1A -> \033[2A
-    screen.assertCodePoints("\033[K\r\033[1B\033[K\033[1B\033[K\033[1C\033[1C\033[1A\033[1A").assertEmpty();
+    screen.assertCodePoints("\033[K\n\033[K\n\033[K\033[2Aab").assertEmpty();
+  }
+
+  @Test
+  public void testMoveCursorWrapped() {
+    TestTerminal screen = new TestTerminal();
+    LineBuffer curr = new LineBuffer().insert("abcdef").setCursor(0);
+    curr.update(new LineBuffer().insert("abcdef"), screen, 3);
+    screen.assertCodePoints("\n\n").assertEmpty();
+  }
+
+  @Test
+  public void testSingleWrite() {
+    List<String> writes = new ArrayList<>();
+    LineBuffer curr = new LineBuffer().insert("abc");
+    curr.update(new LineBuffer().insert("axcd").setCursor(1), (CodePointSink) (buf, off, len) -> writes.add(new String(buf, off, len)), 20);
+    assertEquals(Collections.singletonList("\b\bxcd\ra"), writes);
+    curr.update(curr.copy(), (CodePointSink) (buf, off, len) -> writes.add(new String(buf, off, len)), 20);
+    assertEquals(1, writes.size());
+  }
+
+  @Test
+  public void testDeviceMotion() {
+    Device device = new Device("test", Collections.emptyList(), null);
+    device.addFeature("cub1", new Sequence("<"));
+    device.addFeature("hpa", new Sequence("|||"));
+    CursorMotion motion = new CursorMotion(device);
+    TestTerminal screen = new TestTerminal();
+    LineBuffer curr = new LineBuffer().insert("abcdefghijklmnop");
+    curr.update(new LineBuffer().insert("abcdefghijklmnop").setCursor(13), screen, 20, motion);
+    screen.assertCodePoints("<<<").assertEmpty();
+    curr.update(new LineBuffer().insert("abcdefghijklmnop").setCursor(5), screen, 20, motion);
+    screen.assertCodePoints("|||").assertEmpty();
+    curr.update(new LineBuffer().insert("abcdefghijklmnop").setCursor(8), screen, 20, motion);
+    screen.assertCodePoints("fgh").assertEmpty();
+    curr.update(new LineBuffer().insert("abcdefghijklmnop").setCursor(0), screen, 20, motion);
+    screen.assertCodePoints("\r").assertEmpty();
+  }
+
+  @Test
+  public void testWideWrap() {
+    TestTerminal screen = new TestTerminal();
+    LineBuffer curr = new LineBuffer();
+    curr.update(new LineBuffer().insert("ab\u3042"), screen, 3);
+    screen.assertCodePoints("ab\n\u3042").assertEmpty();
+  }
+
+  @Test
+  public void testWideReplace() {
+    TestTerminal screen = new TestTerminal();
+    LineBuffer curr = new LineBuffer().insert("abc");
+    curr.update(new LineBuffer().insert("a\u3042c"), screen, 20);
+    screen.assertCodePoints("\b\b\u3042c").assertEmpty();
+  }
+
+  @Test
+  public void testCombining() {
+    TestTerminal screen = new TestTerminal();
+    LineBuffer curr = new LineBuffer().insert("e");
+    curr.update(new LineBuffer().insert("e\u0301"), screen, 20);
+    screen.assertCodePoints("\re\u0301").assertEmpty();
   }
 }
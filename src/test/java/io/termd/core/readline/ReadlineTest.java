@@ -462,4 +462,50 @@ public class ReadlineTest extends TestBase {
     term.assertAt(0, 2);
     term.assertScreen("% a");
   }
+
+  @Test
+  public void testBracketedPasteMode() {
+    TestTerm term = new TestTerm(this);
+    assertFalse(term.readline.isBracketedPaste());
+    term.readline.setBracketedPaste(true);
+    term.readlineComplete();
+    assertTrue(term.isBracketedPaste());
+    term.read('\r');
+    assertFalse(term.isBracketedPaste());
+  }
+
+  @Test
+  public void testPaste() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    term.read('a');
+    term.read(BACKWARD_KEY);
+    term.read(27, '[', '2', '0', '0', '~', 'b', 1, 'c');
+    term.read('\r', 'd', '\r', '\n', 'e', 27, '[', '2', '0', '1', '~');
+    term.assertScreen("% bc", "d", "ea");
+    term.assertAt(2, 1);
+    assertEquals(1, term.getBellCount());
+    assertNull(line.get());
+    term.read('\r');
+    assertEquals("bc\nd\nea", line.get());
+  }
+
+  @Test
+  public void testInsertChunk() {
+    TestTerm term = new TestTerm(this);
+    Supplier<String> line = term.readlineComplete();
+    int writes = term.getWriteCount();
+    term.read('h', 'e', 'l', 'l', 'o');
+    term.assertScreen("% hello");
+    term.assertAt(0, 7);
+    assertEquals(writes + 1, term.getWriteCount());
+    int[] chunk = new int[BACKWARD_KEY.length + 4];
+    chunk[0] = '!';
+    System.arraycopy(BACKWARD_KEY, 0, chunk, 1, BACKWARD_KEY.length);
+    chunk[chunk.length - 3] = 'x';
+    chunk[chunk.length - 2] = 'y';
+    chunk[chunk.length - 1] = '\r';
+    term.read(chunk);
+    assertEquals("helloxy!", line.get());
+  }
 }
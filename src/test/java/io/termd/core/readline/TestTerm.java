@@ -27,6 +27,7 @@ import io.termd.core.readline.functions.EndOfLine;
 import io.termd.core.readline.functions.ForwardChar;
 import io.termd.core.readline.functions.ForwardWord;
 import io.termd.core.readline.functions.KillLine;
+import io.termd.core.readline.functions.HistorySearchBackward;
 import io.termd.core.readline.functions.NextHistory;
 import io.termd.core.readline.functions.PreviousHistory;
 import io.termd.core.TestBase;
@@ -59,17 +60,21 @@ class TestTerm {
   private int status = 0;
   private int acc = -1;
   private int bell;
+  private int writes;
+  private boolean privateMode;
+  private boolean bracketedPaste;
   private int width = 40;
   Consumer<int[]> writeHandler = new Consumer<int[]>() {
     @Override
     public void accept(int[] event) {
+      writes++;
       for (int i : event) {
-        if (buffer[row] == null) {
-          buffer[row] = new int[100];
-        }
         switch (status) {
           case 0:
             if (i >= 32) {
+              if (buffer[row] == null) {
+                buffer[row] = new int[100];
+              }
               buffer[row][cursor] = i;
               forward();
             } else {
@@ -100,13 +105,18 @@ class TestTerm {
             }
             break;
           case 2:
-            if (i >= '0' && i <= '9') {
+            if (i == '?') {
+              privateMode = true;
+            } else if (i >= '0' && i <= '9') {
               if (acc == -1) {
                 acc = i - '0';
               } else {
                 acc = acc * 10 + (i - '0');
               }
             } else {
+              if (acc == -1 && i >= 'A' && i <= 'G') {
+                acc = 1; // Default parameter of the cursor motions
+              }
               switch (i) {
                 case 'A':
                   while (acc-- > 0 && row > 0) {
@@ -128,10 +138,21 @@ class TestTerm {
                     backward();
                   }
                   break;
+                case 'G':
+                  cursor = acc - 1;
+                  break;
+                case 'h':
+                case 'l':
+                  if (privateMode && acc == 2004) {
+                    bracketedPaste = i == 'h';
+                  } else {
+                    throw new UnsupportedOperationException("Implement mode " + acc);
+                  }
+                  break;
                 case 'K': {
                   if (acc != -1) {
                     throw new UnsupportedOperationException("Not yet implemented");
-                  } else {
+                  } else if (buffer[row] != null) {
                     for (int j = cursor;j < buffer[row].length;j++) {
                       buffer[row][j] = 0;
                     }
@@ -142,6 +163,7 @@ class TestTerm {
                   throw new UnsupportedOperationException("Implement escape sequence " + i);
               }
               acc = -1;
+              privateMode = false;
               status = 0;
             }
             break;
@@ -285,6 +307,7 @@ class TestTerm {
     readline.addFunction(new ForwardChar());
     readline.addFunction(new PreviousHistory());
     readline.addFunction(new NextHistory());
+    readline.addFunction(new HistorySearchBackward());
     readline.addFunction(new BeginningOfLine());
     readline.addFunction(new EndOfLine());
     readline.addFunction(new DeleteChar());
@@ -326,6 +349,14 @@ class TestTerm {
     }
   }
 
+  public int getWriteCount() {
+    return writes;
+  }
+
+  public boolean isBracketedPaste() {
+    return bracketedPaste;
+  }
+
   public int getBellCount() {
     return bell;
   }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.telnet;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.termd.core.telnet.netty.TelnetChannelHandler;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class NettyTelnetConnectionTest {
+
+  private TelnetConnection conn;
+  private final List<Boolean> writabilityChanges = new ArrayList<>();
+
+  private EmbeddedChannel channel(long flushMaxLatency, int flushThreshold) {
+    return new EmbeddedChannel(new TelnetChannelHandler(() -> new TelnetHandler() {
+      @Override
+      protected void onOpen(TelnetConnection conn) {
+        NettyTelnetConnectionTest.this.conn = conn;
+      }
+      @Override
+      protected void onWritabilityChanged(boolean writable) {
+        writabilityChanges.add(writable);
+      }
+    }, flushMaxLatency, flushThreshold));
+  }
+
+  private static String read(EmbeddedChannel channel) {
+    ByteBuf buf = channel.readOutbound();
+    try {
+      return buf.toString(StandardCharsets.US_ASCII);
+    } finally {
+      buf.release();
+    }
+  }
+
+  @Test
+  public void testCoalesceWritesOfTick() {
+    EmbeddedChannel channel = channel(0, 1024);
+    conn.write("abc".getBytes());
+    conn.write("\r\n".getBytes());
+    conn.write("def".getBytes());
+    assertNull(channel.readOutbound());
+    channel.runPendingTasks();
+    assertEquals("abc\r\ndef", read(channel));
+    assertNull(channel.readOutbound());
+  }
+
+  @Test
+  public void testFlushThreshold() {
+    EmbeddedChannel channel = channel(0, 4);
+    conn.write("ab".getBytes());
+    assertNull(channel.readOutbound());
+    conn.write("cd".getBytes());
+    assertEquals("abcd", read(channel));
+    conn.write("e".getBytes());
+    channel.runPendingTasks();
+    assertEquals("e", read(channel));
+  }
+
+  @Test
+  public void testFlushOnClose() {
+    EmbeddedChannel channel = channel(1000, 1024);
+    conn.write("abc".getBytes());
+    conn.close();
+    assertEquals("abc", read(channel));
+  }
+
+  @Test
+  public void testWritabilityChanged() {
+    EmbeddedChannel channel = channel(0, 1024);
+    assertTrue(conn.isWritable());
+    channel.unsafe().outboundBuffer().setUserDefinedWritability(1, false);
+    channel.runPendingTasks();
+    assertFalse(conn.isWritable());
+    channel.unsafe().outboundBuffer().setUserDefinedWritability(1, true);
+    channel.runPendingTasks();
+    assertTrue(conn.isWritable());
+    assertEquals(Arrays.asList(false, true), writabilityChanges);
+  }
+}
@@ -0,0 +1,144 @@
+package io.termd.core.telnet;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TelnetConnectionTest {
+
+  private final List<String> received = new ArrayList<>();
+  private final List<byte[]> sent = new ArrayList<>();
+  private final List<ByteBuffer> views = new ArrayList<>();
+
+  private TelnetConnection connection(boolean receiveBinary) {
+    TelnetConnection conn = new TelnetConnection(new TelnetHandler() {
+      @Override
+      protected void onData(ByteBuffer data) {
+        views.add(data);
+        super.onData(data);
+      }
+      @Override
+      protected void onData(byte[] data) {
+        received.add(new String(data, StandardCharsets.ISO_8859_1));
+      }
+      @Override
+      protected void onSize(int width, int height) {
+        received.add(width + "x" + height);
+      }
+    }) {
+      @Override
+      protected void execute(Runnable task) {
+        task.run();
+      }
+      @Override
+      protected void schedule(Runnable task, long delay, TimeUnit unit) {
+        throw new UnsupportedOperationException();
+      }
+      @Override
+      protected void send(byte[] data) {
+        sent.add(data);
+      }
+      @Override
+      public void close() {
+      }
+    };
+    conn.receiveBinary = receiveBinary;
+    return conn;
+  }
+
+  private static byte[] bytes(int... values) {
+    byte[] bytes = new byte[values.length];
+    for (int i = 0;i < values.length;i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testReceiveDataSlices() {
+    TelnetConnection conn = connection(false);
+    ByteBuffer buf = ByteBuffer.wrap(bytes('a', 'b', 0xFF, 0xFA, 31, 0, 80, 0, 24, 0xFF, 0xF0, 'c', 'd', 'e'));
+    conn.receive(buf);
+    assertEquals(Arrays.asList("ab", "80x24", "cde"), received);
+    assertEquals(2, views.size());
+    assertSame(buf, views.get(0));
+    assertSame(buf, views.get(1));
+    assertFalse(buf.hasRemaining());
+  }
+
+  @Test
+  public void testReceiveEscapedIac() {
+    TelnetConnection conn = connection(true);
+    conn.receive(ByteBuffer.wrap(bytes('a', 0xFF, 0xFF, 'b')));
+    assertEquals(Arrays.asList("a", "\u00FFb"), received);
+  }
+
+  @Test
+  public void testReceiveEscapedIacAcrossBuffers() {
+    TelnetConnection conn = connection(true);
+    conn.receive(ByteBuffer.wrap(bytes('a', 0xFF)));
+    conn.receive(ByteBuffer.wrap(bytes(0xFF, 'b')));
+    assertEquals(Arrays.asList("a", "\u00FFb"), received);
+  }
+
+  @Test
+  public void testReceiveCommandAcrossBuffers() {
+    TelnetConnection conn = connection(false);
+    conn.receive(ByteBuffer.wrap(bytes('a', 0xFF, 0xFA, 31, 0)));
+    conn.receive(ByteBuffer.wrap(bytes(80, 0, 24, 0xFF)));
+    conn.receive(ByteBuffer.wrap(bytes(0xF0, 'b')));
+    assertEquals(Arrays.asList("a", "80x24", "b"), received);
+  }
+
+  @Test
+  public void testReceiveDirectBuffer() {
+    TelnetConnection conn = connection(false);
+    byte[] data = bytes('a', 'b', 0xFF, 0xFB, 47, 'c');
+    ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+    buf.put(data).flip();
+    conn.receive(buf);
+    assertEquals(Arrays.asList("ab", "c"), received);
+    assertEquals(1, sent.size());
+  }
+
+  @Test
+  public void testWriteEscapedIacAtOnce() {
+    TelnetConnection conn = connection(false);
+    conn.sendBinary = true;
+    conn.write(bytes('a', 0xFF, 'b', 0xFF, 0xFF, 'c', 'd'), 1, 5);
+    assertEquals(1, sent.size());
+    assertEquals(Arrays.toString(bytes(0xFF, 0xFF, 'b', 0xFF, 0xFF, 0xFF, 0xFF, 'c')), Arrays.toString(sent.get(0)));
+  }
+
+  @Test
+  public void testWriteRange() {
+    TelnetConnection conn = connection(false);
+    conn.write(bytes('a', 0xE2, 'c'), 1, 2);
+    assertEquals(1, sent.size());
+    assertEquals(Arrays.toString(bytes(0x62, 'c')), Arrays.toString(sent.get(0)));
+  }
+
+  @Test
+  public void testWriteArrayNotRetained() {
+    TelnetConnection conn = connection(false);
+    byte[] data = bytes('a', 'b');
+    conn.write(data, 0, 2);
+    data[0] = 'c';
+    assertEquals(1, sent.size());
+    assertNotSame(data, sent.get(0));
+    assertEquals(Arrays.toString(bytes('a', 'b')), Arrays.toString(sent.get(0)));
+  }
+}
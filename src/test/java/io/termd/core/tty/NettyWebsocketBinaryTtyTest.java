@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.tty;
+
+import io.termd.core.http.HttpTtyConnection;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class NettyWebsocketBinaryTtyTest extends NettyWebsocketTtyTest {
+
+  @Override
+  protected boolean binary() {
+    return true;
+  }
+
+  @Test
+  public void testPing() throws Exception {
+    server(conn -> {});
+    assertConnect();
+    assertEquals(HttpTtyConnection.BINARY_PROTOCOL, session().getNegotiatedSubprotocol());
+    ByteBuffer ping = ByteBuffer.allocate(5);
+    ping.put(HttpTtyConnection.OP_PING).put("ping".getBytes(StandardCharsets.US_ASCII)).flip();
+    session().getBasicRemote().sendBinary(ping);
+    ByteBuffer pong = pongs.poll(10, TimeUnit.SECONDS);
+    assertNotNull(pong);
+    assertEquals("ping", StandardCharsets.US_ASCII.decode(pong).toString());
+  }
+}
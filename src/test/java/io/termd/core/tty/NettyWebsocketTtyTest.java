@@ -33,7 +33,7 @@ public class NettyWebsocketTtyTest extends WebsocketTtyTestBase {
     if (bootstrap != null) {
       throw failure("Server already started");
     }
-    bootstrap = new NettyWebsocketTtyBootstrap().setHost("localhost").setPort(8080);
+    bootstrap = createBootstrap().setHost("localhost").setPort(8080);
     try {
       bootstrap.start(onConnect).get(10, TimeUnit.SECONDS);
     } catch (Exception e) {
@@ -41,6 +41,10 @@ public class NettyWebsocketTtyTest extends WebsocketTtyTestBase {
     }
   }
 
+  protected NettyWebsocketTtyBootstrap createBootstrap() {
+    return new NettyWebsocketTtyBootstrap();
+  }
+
   public void after() throws Exception {
     if (bootstrap != null) {
       bootstrap.stop().get(10, TimeUnit.SECONDS);
@@ -0,0 +1,105 @@
+package io.termd.core.tty;
+
+import io.termd.core.TestBase;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class TtyOutputQueueTest extends TestBase {
+
+  @Test
+  public void testDrainOnExecutor() {
+    ArrayBlockingQueue<Runnable> commands = new ArrayBlockingQueue<>(10);
+    List<int[]> writes = new ArrayList<>();
+    TtyOutputQueue queue = new TtyOutputQueue(commands::add, writes::add);
+    queue.accept(new int[]{'a', 'b'});
+    queue.accept(new int[]{'c'});
+    assertEquals(0, writes.size());
+    assertEquals(1, commands.size());
+    commands.poll().run();
+    assertEquals(1, writes.size());
+    assertEquals(new int[]{'a', 'b', 'c'}, writes.get(0));
+    queue.accept(new int[]{'d'});
+    assertEquals(1, commands.size());
+    commands.poll().run();
+    assertEquals(2, writes.size());
+    assertEquals(new int[]{'d'}, writes.get(1));
+  }
+
+  @Test
+  public void testDrainInline() {
+    ArrayBlockingQueue<Runnable> commands = new ArrayBlockingQueue<>(10);
+    List<String> events = new ArrayList<>();
+    TtyOutputQueue[] queue = new TtyOutputQueue[1];
+    queue[0] = new TtyOutputQueue(commands::add, () -> true, codePoints -> {
+      String s = new String(codePoints, 0, codePoints.length);
+      if (s.equals("a")) {
+        // Written during the drain, handed after the current code points
+        queue[0].accept(new int[]{'c'});
+      }
+      events.add(s);
+    });
+    queue[0].accept(new int[]{'a'});
+    assertEquals(0, commands.size());
+    assertEquals("[a, c]", events.toString());
+    queue[0].execute(() -> events.add("task"));
+    assertEquals(0, commands.size());
+    assertEquals("[a, c, task]", events.toString());
+  }
+
+  @Test
+  public void testExecuteAfterOutput() {
+    ArrayBlockingQueue<Runnable> commands = new ArrayBlockingQueue<>(10);
+    List<String> events = new ArrayList<>();
+    TtyOutputQueue queue = new TtyOutputQueue(commands::add, codePoints -> events.add(new String(codePoints, 0, codePoints.length)));
+    queue.accept(new int[]{'a'});
+    queue.execute(() -> events.add("task"));
+    queue.accept(new int[]{'b'});
+    commands.poll().run();
+    assertEquals(0, commands.size());
+    assertEquals("[a, task, b]", events.toString());
+  }
+
+  @Test
+  public void testConcurrentProducers() throws Exception {
+    int producers = 4;
+    int count = 10000;
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    AtomicBoolean draining = new AtomicBoolean();
+    int[] next = new int[producers];
+    CountDownLatch done = new CountDownLatch(producers * count);
+    TtyOutputQueue queue = new TtyOutputQueue(pool, codePoints -> {
+      assertTrue(draining.compareAndSet(false, true));
+      for (int codePoint : codePoints) {
+        assertEquals(next[codePoint >> 16]++, codePoint & 0xFFFF);
+        done.countDown();
+      }
+      draining.set(false);
+    });
+    List<Thread> threads = new ArrayList<>();
+    for (int i = 0;i < producers;i++) {
+      int id = i;
+      threads.add(new Thread(() -> {
+        for (int j = 0;j < count;j++) {
+          queue.accept(new int[]{(id << 16) | j});
+        }
+      }));
+    }
+    threads.forEach(Thread::start);
+    try {
+      assertTrue(done.await(30, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+}
@@ -17,6 +17,7 @@
 package io.termd.core.tty;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.termd.core.http.HttpTtyConnection;
 import org.junit.After;
 
 import javax.websocket.ClientEndpointConfig;
@@ -31,8 +32,13 @@ import java.io.IOException;
 import java.io.PipedReader;
 import java.io.PipedWriter;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
 
 /**
@@ -43,6 +49,14 @@ import java.util.concurrent.CountDownLatch;
   private Endpoint endpoint;
   private Session session;
   private PipedReader in;
+  protected final BlockingQueue<ByteBuffer> pongs = new ArrayBlockingQueue<>(10);
+
+  /**
+   * @return true to negotiate the binary protocol
+   */
+  protected boolean binary() {
+    return false;
+  }
 
   @After
   public void after() throws Exception {
@@ -57,6 +71,10 @@ import java.util.concurrent.CountDownLatch;
     }
   }
 
+  protected Session session() {
+    return session;
+  }
+
   @Override
   public boolean checkDisconnected() {
     return session == null || !session.isOpen();
@@ -83,6 +101,23 @@ import java.util.concurrent.CountDownLatch;
             }
           }
         });
+        session.addMessageHandler(new MessageHandler.Whole<ByteBuffer>() {
+          @Override
+          public void onMessage(ByteBuffer message) {
+            try {
+              switch (message.get()) {
+                case HttpTtyConnection.OP_DATA:
+                  out.write(StandardCharsets.UTF_8.decode(message).toString());
+                  break;
+                case HttpTtyConnection.OP_PONG:
+                  pongs.add(message);
+                  break;
+              }
+            } catch (IOException e) {
+              e.printStackTrace();
+            }
+          }
+        });
         latch.countDown();
       }
       @Override
@@ -95,7 +130,11 @@ import java.util.concurrent.CountDownLatch;
       public void onError(Session session, Throwable thr) {
       }
     };
-    ClientEndpointConfig clientEndpointConfig = ClientEndpointConfig.Builder.create().build();
+    ClientEndpointConfig.Builder builder = ClientEndpointConfig.Builder.create();
+    if (binary()) {
+      builder.preferredSubprotocols(Collections.singletonList(HttpTtyConnection.BINARY_PROTOCOL));
+    }
+    ClientEndpointConfig clientEndpointConfig = builder.build();
     WebSocketContainer webSocketContainer = ContainerProvider.getWebSocketContainer();
     session = webSocketContainer.connectToServer(endpoint, clientEndpointConfig, new URI("http://localhost:8080/ws"));
     latch.await();
@@ -103,6 +142,13 @@ import java.util.concurrent.CountDownLatch;
 
   @Override
   protected void assertWrite(String s) throws Exception {
+    if (binary()) {
+      byte[] data = s.getBytes(StandardCharsets.UTF_8);
+      ByteBuffer msg = ByteBuffer.allocate(1 + data.length);
+      msg.put(HttpTtyConnection.OP_DATA).put(data).flip();
+      session.getBasicRemote().sendBinary(msg);
+      return;
+    }
     Map<String, String> msg = new HashMap<>();
     msg.put("action", "read");
     msg.put("data", s);
@@ -141,6 +187,12 @@ import java.util.concurrent.CountDownLatch;
 
   @Override
   protected void resize(int width, int height) throws Exception {
+    if (binary()) {
+      ByteBuffer msg = ByteBuffer.allocate(9);
+      msg.put(HttpTtyConnection.OP_RESIZE).putInt(width).putInt(height).flip();
+      session.getBasicRemote().sendBinary(msg);
+      return;
+    }
     Map<String, Object> msg = new HashMap<>();
     msg.put("action", "resize");
     msg.put("cols", width);
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Julien Viet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.termd.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the {@link Wcwidth} lookup table from {@link Wcwidth#compute(int)}, the output replaces the
+ * {@code BLOCK_INDEX} and {@code BLOCKS} declarations.
+ *
+ * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
+ */
+public class WcwidthTableGenerator {
+
+  public static void main(String[] args) {
+    System.out.print(generate());
+  }
+
+  static String generate() {
+    int[] index = new int[Wcwidth.TABLE_LIMIT >> 8];
+    List<int[]> blocks = new ArrayList<>();
+    for (int i = 0;i < index.length;i++) {
+      int[] block = new int[16];
+      for (int j = 0;j < 256;j++) {
+        block[j >> 4] |= (Wcwidth.compute((i << 8) | j) + 1) << ((j & 0xF) << 1);
+      }
+      int n = 0;
+      while (n < blocks.size() && !Arrays.equals(blocks.get(n), block)) {
+        n++;
+      }
+      if (n == blocks.size()) {
+        blocks.add(block);
+      }
+      index[i] = n;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("  private static final char[] BLOCK_INDEX = {\n");
+    for (int i = 0;i < index.length;i++) {
+      sb.append(i % 32 == 0 ? "      " : " ").append(index[i]).append(i % 32 == 31 || i == index.length - 1 ? ",\n" : ",");
+    }
+    sb.append("  };\n\n");
+    sb.append("  private static final int[] BLOCKS = {\n");
+    for (int[] block : blocks) {
+      for (int i = 0;i < block.length;i++) {
+        sb.append(i % 8 == 0 ? "      " : " ").append(String.format("0x%08X", block[i])).append(i % 8 == 7 ? ",\n" : ",");
+      }
+    }
+    sb.append("  };\n");
+    return sb.toString();
+  }
+}
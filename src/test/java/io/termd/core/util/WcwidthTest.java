@@ -19,6 +19,7 @@ package io.termd.core.util;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author <a href="mailto:julien@julienviet.com">Julien Viet</a>
@@ -35,4 +36,13 @@ public class WcwidthTest {
     assertEquals(0, Wcwidth.of('\u0301'));
     assertEquals(1, Wcwidth.of('\u09C0'));
   }
+
+  @Test
+  public void testTable() {
+    for (int codePoint = 0;codePoint <= Character.MAX_CODE_POINT;codePoint++) {
+      assertEquals(Wcwidth.compute(codePoint), Wcwidth.of(codePoint));
+    }
+    assertEquals(-1, Wcwidth.of(-1));
+    assertTrue(Wcwidth.tableSize() < 8192);
+  }
 }